@@ -0,0 +1,106 @@
+package xivvic.console.action;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Command resolution and context listing against registries of increasing size.
+ * Commands are spread over contexts of at most {@link #PER_CONTEXT} commands, the
+ * way menus are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionManagerBenchmark
+{
+	static final int PER_CONTEXT = 100;
+
+	@Param({"10", "10000", "1000000"})
+	private int size;
+
+	private ActionManager am;
+	private String[]      contexts;
+	private String        context;
+	private String        hit;
+	private String        upper;
+	private String        upperContext;
+	private int           next;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		am = populate(size);
+
+		contexts = new String[Math.max(1, size / PER_CONTEXT)];
+		for (int i = 0; i < contexts.length; i++)
+		{
+			contexts[i] = "ctx" + i;
+		}
+
+		int middle = size / 2;
+		context      = contextFor(middle);
+		hit          = "cmd" + middle;
+		upper        = hit.toUpperCase();
+		upperContext = context.toUpperCase();
+	}
+
+	@Benchmark
+	public Action commandHit()
+	{
+		return am.command(context, hit);
+	}
+
+	@Benchmark
+	public Action commandHitMixedCase()
+	{
+		return am.command(upperContext, upper);
+	}
+
+	@Benchmark
+	public Action commandMiss()
+	{
+		return am.command(context, "missing");
+	}
+
+	@Benchmark
+	public String[] commandsInContext()
+	{
+		next = (next + 1) % contexts.length;
+		return am.commands(contexts[next]);
+	}
+
+	static ActionManager populate(int size)
+	{
+		ActionManager am = new ActionManager();
+
+		am.registerAll(registry ->
+		{
+			for (int i = 0; i < size; i++)
+			{
+				registry.register(new DummyAction("cmd" + i, "benchmark command", true), contextFor(i));
+			}
+		});
+
+		return am;
+	}
+
+	static String contextFor(int i)
+	{
+		return "ctx" + (i / PER_CONTEXT);
+	}
+}
@@ -0,0 +1,126 @@
+package xivvic.console.action;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup throughput as reader threads are added.  Reads never lock, so the score
+ * of the readers benchmarks should grow linearly with the thread count up to the
+ * number of cores.  The hotRegistration group measures readers while one thread
+ * keeps registering new commands.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionManagerConcurrencyBenchmark
+{
+	private static final int SIZE = 10000;
+
+	private ActionManager am;
+	private String[]      names;
+	private String[]      contexts;
+	private int           registered;
+
+	@State(Scope.Thread)
+	public static class Cursor
+	{
+		int i;
+
+		int next()
+		{
+			i = (i + 7919) % SIZE;
+			return i;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		names    = new String[SIZE];
+		contexts = new String[SIZE];
+
+		for (int i = 0; i < SIZE; i++)
+		{
+			names[i]    = "cmd" + i;
+			contexts[i] = ActionManagerBenchmark.contextFor(i);
+		}
+	}
+
+	// A fresh registry each iteration keeps the hot registration
+	// writer from growing the buckets without bound.
+	//
+	@Setup(Level.Iteration)
+	public void registry()
+	{
+		am = ActionManagerBenchmark.populate(SIZE);
+		registered = SIZE;
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Action readers1(Cursor c)
+	{
+		return lookup(c);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public Action readers2(Cursor c)
+	{
+		return lookup(c);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Action readers4(Cursor c)
+	{
+		return lookup(c);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Action readers8(Cursor c)
+	{
+		return lookup(c);
+	}
+
+	@Benchmark
+	@Group("hotRegistration")
+	@GroupThreads(4)
+	public Action hotRegistrationReader(Cursor c)
+	{
+		return lookup(c);
+	}
+
+	@Benchmark
+	@Group("hotRegistration")
+	@GroupThreads(1)
+	public void hotRegistrationWriter()
+	{
+		int i = registered++;
+		am.register(new DummyAction("hot" + i, "registered during reads", true), ActionManagerBenchmark.contextFor(i % SIZE));
+	}
+
+	private Action lookup(Cursor c)
+	{
+		int i = c.next();
+		return am.command(contexts[i], names[i]);
+	}
+}
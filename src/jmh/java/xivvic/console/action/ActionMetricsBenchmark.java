@@ -0,0 +1,61 @@
+package xivvic.console.action;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of invoking an empty action, with metrics recording off and on, from
+ * one thread and from four threads invoking the same action.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionMetricsBenchmark
+{
+	@Param({"false", "true"})
+	private boolean enabled;
+
+	private Action action;
+
+	@Setup
+	public void setup()
+	{
+		action = new DummyAction("bench", "Empty action", true);
+		ActionMetrics.setEnabled(enabled);
+	}
+
+	@TearDown
+	public void teardown()
+	{
+		ActionMetrics.setEnabled(false);
+	}
+
+	@Benchmark
+	public void invoke()
+	{
+		action.invoke(null);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void invokeContended()
+	{
+		action.invoke(null);
+	}
+}
@@ -0,0 +1,127 @@
+package xivvic.console.interact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xivvic.console.action.Action;
+import xivvic.console.action.ActionManager;
+import xivvic.console.action.DummyAction;
+
+/**
+ * Cost of turning one line of menu input into resolved operations.
+ *
+ * The legacy benchmarks reproduce the original Pattern.split / trim / substring
+ * tokenizer so the gc profiler's gc.alloc.rate.norm column shows the allocation
+ * saved per line by the single pass scanner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputProcessorBenchmark
+{
+	private static final Pattern SPLIT_PATTERN = Pattern.compile("##");
+
+	private final String single   = "list  all records";
+	private final String compound = "1 hello ## data.export now ## 2 ## help topic";
+
+	private ActionManager am;
+
+	@Setup
+	public void setup()
+	{
+		am = new ActionManager();
+		am.register(new DummyAction("list",   "list",   true), "main", "1");
+		am.register(new DummyAction("export", "export", true), "data", "2");
+		am.register(new DummyAction("help",   "help",   true), ActionManager.GLOBAL_CONTEXT, "?");
+	}
+
+	@Benchmark
+	public OpSpec[] single()
+	{
+		return InputProcessor.processInput("main", single, am);
+	}
+
+	@Benchmark
+	public OpSpec[] compound()
+	{
+		return InputProcessor.processInput("main", compound, am);
+	}
+
+	@Benchmark
+	public OpSpec[] legacySingle()
+	{
+		return legacyProcessInput("main", single, am);
+	}
+
+	@Benchmark
+	public OpSpec[] legacyCompound()
+	{
+		return legacyProcessInput("main", compound, am);
+	}
+
+	// The tokenizer InputProcessor used before the single pass scanner.
+	//
+	private static OpSpec[] legacyProcessInput(String context, String input, ActionManager am)
+	{
+		List<OpSpec> list = new ArrayList<>();
+		String[]    parts = input.indexOf("##") == -1 ? new String[] { input.trim() } : SPLIT_PATTERN.split(input);
+
+		for (String part : parts)
+		{
+			part = part.trim();
+
+			String    verb = part.trim();
+			String   param = null;
+			int      index = part.indexOf(' ');
+			if (index > 0)
+			{
+				verb  = part.substring(0, index);
+				param = part.substring(index + 1);
+				param = param.trim();
+			}
+
+			int del = verb.indexOf(ActionManager.DELIMITER);
+
+			if (del != -1)
+			{
+				context = verb.substring(0, del);
+				verb    = verb.substring(del + 1);
+			}
+
+			Action action = am.command(context, verb);
+
+			if (action == null)
+			{
+				action = am.command(ActionManager.GLOBAL_CONTEXT, verb);
+
+				if (action == null)
+				{
+					return new OpSpec[0];
+				}
+			}
+
+			OpSpec os = new OpSpec(verb, param);
+			os.action(action);
+
+			list.add(os);
+		}
+
+		return list.toArray(new OpSpec[0]);
+	}
+}
@@ -0,0 +1,85 @@
+package xivvic.console.interact;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading a large piped input, one operation being the whole input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StdinBenchmark
+{
+	@Param({"100000"})
+	private int lines;
+
+	private byte[]      text;
+	private byte[]      numbers;
+	private PrintStream sink;
+
+	@Setup
+	public void setup()
+	{
+		StringBuilder t = new StringBuilder();
+		StringBuilder n = new StringBuilder();
+
+		for (int i = 0; i < lines; i++)
+		{
+			t.append("data.export records ").append(i).append(" ## 2 ## help\n");
+			n.append(i * 31 - lines).append('\n');
+		}
+
+		text    = t.toString().getBytes(StandardCharsets.UTF_8);
+		numbers = n.toString().getBytes(StandardCharsets.UTF_8);
+		sink    = new PrintStream(new OutputStream()
+		{
+			@Override
+			public void write(int b)
+			{
+				// Discard
+			}
+		});
+	}
+
+	@Benchmark
+	public void getString(Blackhole bh)
+	{
+		Stdin stdin = new Stdin(new ByteArrayInputStream(text), sink);
+
+		for (int i = 0; i < lines; i++)
+		{
+			bh.consume(stdin.getString());
+		}
+	}
+
+	@Benchmark
+	public void getInt(Blackhole bh)
+	{
+		Stdin stdin = new Stdin(new ByteArrayInputStream(numbers), sink);
+
+		for (int i = 0; i < lines; i++)
+		{
+			bh.consume(stdin.getInt());
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package xivvic.console.menu;
+
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xivvic.console.action.ActionManager;
+import xivvic.console.action.DummyAction;
+
+/**
+ * Rendering a menu two levels deep, for a small menu and a huge one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MenuFormatterBenchmark
+{
+	@Param({"8", "2000"})
+	private int items;
+
+	private Menu        menu;
+	private Deque<Menu> stack;
+
+	@Setup
+	public void setup()
+	{
+		MenuManager mm = new MenuManager(new ActionManager());
+		Menu      main = new Menu("Main menu", "main", mm);
+
+		menu = new Menu("Records", "rec", mm);
+		for (int i = 0; i < items; i++)
+		{
+			DummyAction action = new DummyAction("item" + i, "benchmark item", i % 3 != 0);
+			menu.addItem("Menu item number " + i, "i" + i, action);
+		}
+
+		stack = new LinkedList<>();
+		stack.add(main);
+		stack.add(menu);
+	}
+
+	@Benchmark
+	public String format()
+	{
+		return MenuFormatter.format(menu, stack);
+	}
+}
@@ -5,18 +5,36 @@ import static xivvic.console.action.ActionTiming.POST_INITIALIZE;
 import static xivvic.console.action.ActionTiming.RUNTIME_POST_ACTION_EXEC;
 import static xivvic.console.action.ActionTiming.SHUTDOWN;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.net.SocketAddress;
 import java.text.DateFormat;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import xivvic.console.action.Action;
+import xivvic.console.action.ActionBase;
 import xivvic.console.action.ActionManager;
+import xivvic.console.action.ActionResult;
 import xivvic.console.action.ActionTiming;
 import xivvic.console.action.BatchAction;
+import xivvic.console.action.BatchSource;
+import xivvic.console.interact.CommandHistory;
+import xivvic.console.interact.ParsedInput;
+import xivvic.console.interact.ResultRenderer;
 import xivvic.console.interact.Stdin;
+import xivvic.console.interact.TableRenderer;
+import xivvic.console.menu.MenuCursor;
 import xivvic.console.menu.MenuManager;
+import xivvic.console.util.Signals;
 
 /**
  * Application -- base class for console applications.
@@ -40,8 +58,21 @@ public class Application
 	private String  message;
 
 	private BatchAction batchCallback = null;
+	private long     batchProgressEvery = 10000;
+	private int         batchParallelism = Runtime.getRuntime().availableProcessors();
+
+	private final Map<Action, String[]> initDependencies = new IdentityHashMap<>();
+	private int                         initParallelism  = Runtime.getRuntime().availableProcessors();
 
 	private PrintStream out = System.out;
+
+	/**
+	 * The status a shell gives a process ended by SIGINT.
+	 */
+	private static final int EXIT_INTERRUPTED = 130;
+
+	private static final int HISTORY_LIST = 20;
+	private CommandHistory   history      = null;
 	private MenuManager mm;
 	private ActionManager am;
 
@@ -55,15 +86,127 @@ public class Application
 	 * Register an action for the the application to perform before it begins
 	 * execution.
 	 *
+	 * Init actions run on a pool of threads, see {@link #setInitParallelism(int)}.
+	 * An action starts once the actions it depends on have completed; actions
+	 * with no dependency between them may run at the same time.  While no init
+	 * action declares a dependency, they run one at a time in the order they
+	 * were registered.
+	 *
+	 * @param action the action to perform
+	 * @param dependsOn names of init actions that must complete first
 	 */
-	public void registerInitAction(Action action)
+	public void registerInitAction(Action action, String... dependsOn)
 	{
+		Objects.requireNonNull(action);
+
+		initDependencies.put(action, dependsOn.clone());
 		am.register(action, INITIALIZE);
 	}
 
+	/**
+	 * Register an action for the application to perform once every init action
+	 * has completed, and before it begins execution.
+	 *
+	 * @param action the action to perform
+	 * @param dependsOn names of init or post init actions that must complete first
+	 */
+	public void registerPostInitAction(Action action, String... dependsOn)
+	{
+		Objects.requireNonNull(action);
+
+		initDependencies.put(action, dependsOn.clone());
+		am.register(action, POST_INITIALIZE);
+	}
+
+	/**
+	 * Sets the most init actions that run at the same time, in a phase where
+	 * some action declares a dependency.  One runs them in the order they were
+	 * registered, as far as their dependencies allow.
+	 */
+	public void setInitParallelism(int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("Init parallelism must be at least 1: " + threads);
+		}
+
+		initParallelism = threads;
+	}
+
 	public void registerBatch(BatchAction ba)
 	{
 		am.register(ba, null, ba.name());
+		batchCallback = ba;
+	}
+
+	/**
+	 * Sets how often batch execution reports progress, in commands.
+	 * Zero or less turns progress reports off.
+	 */
+	public void setBatchProgressInterval(long commands)
+	{
+		batchProgressEvery = commands;
+	}
+
+	/**
+	 * Sets the number of threads that run the segments of a parallel batch
+	 * section.  See {@link BatchAction#PARALLEL_BEGIN}.
+	 */
+	public void setBatchParallelism(int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("Batch parallelism must be at least 1: " + threads);
+		}
+
+		batchParallelism = threads;
+	}
+
+	/**
+	 * Keeps the commands users enter in the history, and lets them recall
+	 * earlier ones with !!, !n, !-n, !?text and !text.  Also adds the hidden
+	 * "history" command, which lists the last lines entered, or with a
+	 * parameter, the last lines containing it.
+	 *
+	 * The application does not close the history.
+	 */
+	public void setHistory(CommandHistory history)
+	{
+		this.history = Objects.requireNonNull(history);
+
+		Action action = new ActionBase("history", "List the commands entered before", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				String text = param == null ? "" : param.toString();
+				long   next = Long.MAX_VALUE;
+
+				Deque<String> lines = new ArrayDeque<>();
+				while (lines.size() < HISTORY_LIST)
+				{
+					long n = history.search(text, next);
+					if (n < 0)
+					{
+						break;
+					}
+
+					String line = history.get(n);
+					if (line != null)
+					{
+						lines.addFirst(String.format("%6d  %s", n, line));
+					}
+					next = n;
+				}
+
+				for (String line : lines)
+				{
+					System.out.println(line);
+				}
+			}
+		};
+
+		mm.addHiddenAction(action.name(), action);
 	}
 
 	/**
@@ -100,8 +243,11 @@ public class Application
 
 
 	/**
-	 * Runs all INITIALIZE and POST_INITIALIZE actions.
+	 * Runs all INITIALIZE and POST_INITIALIZE actions.  Each phase runs as a
+	 * dependency graph, and POST_INITIALIZE starts once INITIALIZE has completed.
 	 *
+	 * @throws IllegalStateException if an action fails, or the dependencies
+	 * name an unknown action or form a cycle
 	 */
 	protected void setup()
 	{
@@ -109,13 +255,14 @@ public class Application
 
 		setMessage("Starting console application.");
 		out.println(message);
+
+		Set<String> done = new HashSet<>();
 		for (ActionTiming timing : at)
 		{
 			List<Action> actions = am.getActionsFor(timing);
-			for (Action a : actions)
-			{
-				a.invoke(null);
-			}
+			StartupPhase   phase = new StartupPhase(timing, actions, initDependencies, done, out, initParallelism);
+
+			phase.run();
 		}
 	}
 
@@ -130,37 +277,134 @@ public class Application
 		}
 	}
 
+	/**
+	 * Runs the menu loop on the console.
+	 *
+	 * Ctrl-C cancels the action running from the console, if the JVM lets
+	 * SIGINT be handled.  With no action to cancel, or pressed again while the
+	 * action has not yet stopped, it ends the process as it would otherwise.
+	 */
 	public void run()
 	{
-		String    input = null;
-		Stdin     stdin = new Stdin(System.in, System.out);
+		Stdin       stdin = new Stdin(System.in, System.out);
+		MenuCursor cursor = mm.cursor();
+
+		Signals.onInterrupt(() ->
+		{
+			if (! cursor.cancel("interrupted"))
+			{
+				System.exit(EXIT_INTERRUPTED);
+			}
+		});
+
+		runSession(stdin, out, cursor);
+	}
+
+	/**
+	 * Runs the menu loop for one user.  Menus and messages are written to the
+	 * output, and commands are read from the input until the user exits or the
+	 * input ends.
+	 *
+	 * @param stdin where the user's commands are read from
+	 * @param out where menus and messages are written
+	 * Results of result actions are rendered to the output, unless the cursor
+	 * already has a result handler.  Tables are paged.
+	 *
+	 * @param cursor the user's position in the menus
+	 */
+	void runSession(Stdin stdin, PrintStream out, MenuCursor cursor)
+	{
+		Consumer<ActionResult> handler = cursor.results();
+
+		if (handler == null)
+		{
+			TableRenderer tables = new TableRenderer().paging(TableRenderer.DEFAULT_PAGE_SIZE, TableRenderer.prompt(stdin, out));
+			cursor.results(new ResultRenderer(out, tables));
+		}
+
+		try
+		{
+			runLoop(stdin, out, cursor);
+		}
+		finally
+		{
+			cursor.results(handler);
+		}
+	}
+
+	private void runLoop(Stdin stdin, PrintStream out, MenuCursor cursor)
+	{
+		ParsedInput parsed = null;
 
 		while (true)
 		{
-			mm.display(out);
+			mm.display(cursor, out);
+			out.flush();
 
 			do
 			{
-				if (input != null)
+				if (parsed != null && parsed.input() != null)
 				{
-					String msg = "Input [" + input + "] not recognized";
+					String msg = "Input [" + parsed.input() + "] not recognized";
 					out.println(msg);
+
+					List<String> close = mm.suggest(cursor, parsed.input());
+					if (! close.isEmpty())
+					{
+						out.println("Did you mean " + String.join(", ", close) + "?");
+					}
 				}
 
-				input = stdin.getString();
+				String input = stdin.getString();
+				if (input == null)
+				{
+					return;  // End of input.
+				}
+
+				input  = recall(input, out);
+				parsed = input == null ? null : mm.parse(cursor, input);
+			}
+			while (parsed == null || ! parsed.isValid());
+
+			if (history != null)
+			{
+				history.append(parsed.input());
 			}
-			while (! mm.isValidSelection(input));
 
-			mm.invoke(input);
-			input = null;
+			mm.invoke(cursor, parsed);
+			parsed = null;
 
-			if (mm.isDone())
+			if (cursor.isDone())
 			{
 				break;
 			}
 		}
 	}
 
+	// Expands a history reference, echoing the line it refers to.  Returns
+	// null, having said so, if there is no such line.
+	//
+	private String recall(String input, PrintStream out)
+	{
+		if (history == null || ! input.startsWith("!"))
+		{
+			return input;
+		}
+
+		String line = history.expand(input);
+
+		if (line == null)
+		{
+			out.println("History entry [" + input + "] not found");
+		}
+		else if (! line.equals(input))
+		{
+			out.println(line);
+		}
+
+		return line;
+	}
+
 	public void doLifecycle()
 	{
 		setup();
@@ -169,6 +413,40 @@ public class Application
 		teardown();
 	}
 
+	/**
+	 * Runs the application as a server: performs setup, serves sessions on the
+	 * address until the server is closed or this thread is interrupted, then
+	 * performs teardown.
+	 *
+	 * See {@link ConsoleServer}.  Batch commands are not run in server mode.
+	 *
+	 * @param address the address to listen on
+	 */
+	public void doServerLifecycle(SocketAddress address)
+	throws IOException, InterruptedException
+	{
+		setup();
+
+		try (ConsoleServer server = new ConsoleServer(this, address))
+		{
+			server.start();
+
+			String message = "Serving console sessions on port [" + server.port() + "].";
+			out.println(message);
+
+			server.awaitClose();
+		}
+		finally
+		{
+			teardown();
+		}
+	}
+
+	MenuManager menuManager()
+	{
+		return mm;
+	}
+
 	private void setMessage(String m)
 	{
 		String ts = timestamp();
@@ -190,25 +468,91 @@ public class Application
 			return;
 		}
 
-		String[] commands = batchCallback.commands();
-		if (commands == null || commands.length == 0)
+		try (BatchSource source = batchCallback.source())
 		{
-			String message = "No batch input";
-			out.println(message);
-			return;
-		}
+			long size = source.size();
+			if (size == 0)
+			{
+				String message = "No batch input";
+				out.println(message);
+				return;
+			}
+
+			String message = size < 0
+			               ? "Executing batch commands."
+			               : "Executing [" + size + "] batch commands.";
+			setMessage(message);
+			message();
+
+			long             count = 0;
+			String             cmd = null;
+			ParallelBatch parallel = null;
 
-		String message = "Executing [" + commands.length + "] batch commands.";
-		setMessage(message);
-		message();
+			try
+			{
+				while ((cmd = source.next()) != null)
+				{
+					String directive = cmd.trim();
+
+					if (parallel == null && BatchAction.PARALLEL_BEGIN.equals(directive))
+					{
+						parallel = new ParallelBatch(mm, batchCallback, out, batchParallelism);
+						continue;
+					}
+
+					if (parallel != null && BatchAction.PARALLEL_END.equals(directive))
+					{
+						endParallel(parallel);
+						parallel = null;
+						continue;
+					}
+
+					if (parallel != null)
+					{
+						parallel.submit(cmd);
+					}
+					else
+					{
+						batchCallback.invoke(cmd);  // Callback gets to see the command.
+						mm.invoke(cmd);             // MenuManager executes application logic.
+					}
+					count++;
+
+					if (batchProgressEvery > 0 && count % batchProgressEvery == 0)
+					{
+						out.println("Executed [" + count + "] batch commands.");
+					}
+				}
+			}
+			finally
+			{
+				if (parallel != null)
+				{
+					endParallel(parallel);
+				}
+			}
 
-		for (String cmd : commands)
+			if (count == 0)
+			{
+				out.println("No batch input");
+			}
+		}
+		catch (IOException e)
 		{
-			batchCallback.invoke(cmd);  // Callback gets to see the command.
-			mm.invoke(cmd);             // MenuManager executes application logic.
+			String message = "Batch input failed: " + e.getMessage();
+			setMessage(message);
+			message();
 		}
 	}
 
+	private void endParallel(ParallelBatch parallel)
+	{
+		parallel.close();
+
+		String message = "Parallel section ran [" + parallel.submitted() + "] segments, [" + parallel.failed() + "] failed.";
+		out.println(message);
+	}
+
 	private String timestamp()
 	{
 		Date        now = new Date();
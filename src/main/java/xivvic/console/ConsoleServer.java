@@ -0,0 +1,355 @@
+package xivvic.console;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import xivvic.console.interact.ConsoleInformUser;
+import xivvic.console.interact.Stdin;
+import xivvic.console.menu.MenuCursor;
+import xivvic.console.menu.MenuManager;
+import xivvic.console.util.ThreadRoutedOutputStream;
+
+/**
+ * Serves an application's menus to many users at once over TCP.
+ *
+ * Each connection is a session with its own {@link MenuCursor}, starting at the
+ * start menu.  All sessions share the application's menu manager and its
+ * ActionManager, which is safe for concurrent lookups, so a session costs a
+ * thread, a socket, a cursor and a few small buffers.
+ *
+ * Sessions run the same loop as {@link Application#run()}, reading commands
+ * from the socket and writing menus and messages back to it.  While the server
+ * is running System.out is routed per thread, so an action that prints to
+ * System.out writes to the session that invoked it.
+ *
+ * @Threadsafe
+ */
+public class ConsoleServer
+implements Closeable
+{
+	public static final int DEFAULT_MAX_SESSIONS = 256;
+
+	private final Application              app;
+	private final MenuManager              mm;
+	private final ServerSocket             server;
+	private final int                      maxSessions;
+	private final ExecutorService          pool;
+	private final Set<Socket>              sockets = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger            active  = new AtomicInteger();
+	private final CountDownLatch           closed  = new CountDownLatch(1);
+
+	private PrintStream                    systemOut;
+	private ThreadRoutedOutputStream       routed;
+	private Thread                         acceptor;
+
+	public ConsoleServer(Application app, SocketAddress address)
+	throws IOException
+	{
+		this(app, address, DEFAULT_MAX_SESSIONS);
+	}
+
+	/**
+	 * Binds the server socket.  Connections are not accepted until {@link #start()}.
+	 *
+	 * @param app the application whose menus are served
+	 * @param address the address to listen on; port 0 picks a free port
+	 * @param maxSessions connections beyond this many are turned away
+	 */
+	public ConsoleServer(Application app, SocketAddress address, int maxSessions)
+	throws IOException
+	{
+		if (maxSessions < 1)
+		{
+			throw new IllegalArgumentException("Max sessions must be at least 1: " + maxSessions);
+		}
+
+		this.app         = Objects.requireNonNull(app);
+		this.mm          = app.menuManager();
+		this.maxSessions = maxSessions;
+		this.pool        = Executors.newCachedThreadPool(r ->
+		{
+			Thread t = new Thread(r, "console-session");
+			t.setDaemon(true);
+			return t;
+		});
+
+		server = new ServerSocket();
+		server.bind(Objects.requireNonNull(address));
+	}
+
+	/**
+	 * Start accepting connections, on a thread of its own.
+	 */
+	public synchronized void start()
+	{
+		if (acceptor != null)
+		{
+			throw new IllegalStateException("Console server already started");
+		}
+
+		systemOut = System.out;
+		routed    = new ThreadRoutedOutputStream(systemOut);
+		System.setOut(new PrintStream(routed, true));
+
+		acceptor = new Thread(this::accept, "console-server");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @return the port the server is listening on
+	 */
+	public int port()
+	{
+		return server.getLocalPort();
+	}
+
+	/**
+	 * @return the number of sessions currently connected
+	 */
+	public int sessions()
+	{
+		return active.get();
+	}
+
+	/**
+	 * Blocks until the server is closed.
+	 */
+	public void awaitClose()
+	throws InterruptedException
+	{
+		closed.await();
+	}
+
+	/**
+	 * Stops accepting connections and ends every session.  Sessions see the end
+	 * of their input, leave their loop and close their connection.
+	 */
+	@Override
+	public synchronized void close()
+	throws IOException
+	{
+		if (closed.getCount() == 0)
+		{
+			return;
+		}
+
+		try
+		{
+			server.close();
+
+			// Ending the input lets each session finish its command and flush its
+			// output.  Sessions still running after the grace period are cut off.
+			//
+			for (Socket socket : sockets)
+			{
+				shutdownInputQuietly(socket);
+			}
+
+			pool.shutdown();
+			pool.awaitTermination(5, TimeUnit.SECONDS);
+
+			for (Socket socket : sockets)
+			{
+				closeQuietly(socket);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			pool.shutdownNow();
+
+			if (systemOut != null)
+			{
+				System.setOut(systemOut);
+			}
+
+			closed.countDown();
+		}
+	}
+
+	private void accept()
+	{
+		while (! server.isClosed())
+		{
+			Socket socket;
+
+			try
+			{
+				socket = server.accept();
+			}
+			catch (IOException e)
+			{
+				if (! server.isClosed())
+				{
+					systemOut.println("Console server stopped accepting: " + e);
+				}
+				return;
+			}
+
+			if (active.incrementAndGet() > maxSessions)
+			{
+				active.decrementAndGet();
+				refuse(socket);
+				continue;
+			}
+
+			sockets.add(socket);
+
+			try
+			{
+				pool.execute(() -> session(socket));
+			}
+			catch (RejectedExecutionException e)
+			{
+				// close() shut the pool down after this socket was accepted.
+				//
+				sockets.remove(socket);
+				active.decrementAndGet();
+				closeQuietly(socket);
+				return;
+			}
+		}
+	}
+
+	private void session(Socket socket)
+	{
+		try
+		{
+			socket.setTcpNoDelay(true);
+
+			InputStream  in = new EndOnErrorInputStream(socket.getInputStream());
+			PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), true, "UTF-8");
+			Stdin     stdin = new Stdin(in, out, StandardCharsets.UTF_8);
+
+			MenuCursor cursor = mm.newCursor();
+			cursor.informUser(new ConsoleInformUser(out));
+
+			routed.bind(out);
+
+			try
+			{
+				app.runSession(stdin, out, cursor);
+			}
+			finally
+			{
+				routed.unbind();
+				out.flush();
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			systemOut.println("Console session " + socket.getRemoteSocketAddress() + " failed: " + e);
+		}
+		finally
+		{
+			sockets.remove(socket);
+			active.decrementAndGet();
+			closeQuietly(socket);
+		}
+	}
+
+	private void refuse(Socket socket)
+	{
+		try
+		{
+			PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+			out.println("Console server busy, [" + maxSessions + "] sessions already connected.");
+		}
+		catch (IOException e)
+		{
+			// Nothing more to tell a client that cannot be written to.
+			//
+		}
+		finally
+		{
+			closeQuietly(socket);
+		}
+	}
+
+	private static void shutdownInputQuietly(Socket socket)
+	{
+		try
+		{
+			socket.shutdownInput();
+		}
+		catch (IOException e)
+		{
+			// Already closed.
+			//
+		}
+	}
+
+	private static void closeQuietly(Socket socket)
+	{
+		try
+		{
+			socket.close();
+		}
+		catch (IOException e)
+		{
+			// Closing is best effort.
+			//
+		}
+	}
+
+	/**
+	 * Reports a failed read, for example a reset connection or a socket closed
+	 * by {@link ConsoleServer#close()}, as the end of input, so that the session
+	 * loop ends instead of reading the same failure again.
+	 */
+	private static final class EndOnErrorInputStream
+	extends FilterInputStream
+	{
+		private EndOnErrorInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		@Override
+		public int read()
+		{
+			try
+			{
+				return in.read();
+			}
+			catch (IOException e)
+			{
+				return -1;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len)
+		{
+			try
+			{
+				return in.read(b, off, len);
+			}
+			catch (IOException e)
+			{
+				return -1;
+			}
+		}
+	}
+}
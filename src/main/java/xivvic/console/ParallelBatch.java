@@ -0,0 +1,203 @@
+package xivvic.console;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import xivvic.console.action.BatchAction;
+import xivvic.console.interact.ConsoleInformUser;
+import xivvic.console.menu.MenuCursor;
+import xivvic.console.menu.MenuManager;
+import xivvic.console.util.ThreadRoutedOutputStream;
+
+/**
+ * Runs the commands of a parallel batch section on a pool of threads.
+ *
+ * Each command line is an independent segment.  A segment runs on a copy of the
+ * menu manager's cursor taken when the section started, so navigation in one
+ * segment is not seen by the others or by the commands after the section.
+ *
+ * While the section is open, System.out is routed per thread.  Each segment's
+ * output is buffered and written out in the order the segments appear in the
+ * script, followed by a failure report for any segment that threw.  At most a
+ * few segments per thread are in flight, so a section of any length runs in
+ * bounded memory.
+ *
+ * Status and error messages go to the routed System.out too, unless the cursor
+ * already had somewhere of its own to send them.  Messages sent from other
+ * threads, such as the completion of an async action run on the manager's
+ * executor, are not routed and appear as they happen.
+ *
+ * Not thread safe; a section is driven by the thread running the batch.
+ */
+class ParallelBatch
+implements AutoCloseable
+{
+	private final MenuManager                mm;
+	private final MenuCursor                 origin;
+	private final BatchAction                callback;
+	private final PrintStream                out;
+	private final ExecutorService            pool;
+	private final int                        window;
+	private final Deque<Segment>             pending = new ArrayDeque<>();
+	private final PrintStream                systemOut;
+	private final ThreadRoutedOutputStream   routed;
+
+	private int submitted = 0;
+	private int    failed = 0;
+
+	ParallelBatch(MenuManager origin, BatchAction callback, PrintStream out, int threads)
+	{
+		this.mm       = Objects.requireNonNull(origin);
+		this.origin   = origin.cursor().copy();
+		this.callback = Objects.requireNonNull(callback);
+		this.out      = Objects.requireNonNull(out);
+		this.window   = Math.max(1, threads) * 4;
+		this.pool     = Executors.newFixedThreadPool(Math.max(1, threads), r ->
+		{
+			Thread t = new Thread(r, "batch-segment");
+			t.setDaemon(true);
+			return t;
+		});
+
+		systemOut = System.out;
+		routed    = new ThreadRoutedOutputStream(systemOut);
+		System.setOut(new PrintStream(routed, true));
+
+		// The manager's console messages went to System.out as it was before.
+		//
+		if (this.origin.informUser() == null)
+		{
+			this.origin.informUser(new ConsoleInformUser(System.out));
+		}
+	}
+
+	/**
+	 * Queue a segment.  Blocks while the oldest segments are reported if too
+	 * many are in flight.
+	 */
+	void submit(String cmd)
+	{
+		Segment  segment = new Segment(++submitted, cmd);
+		MenuCursor cursor = origin.copy();
+
+		segment.future = pool.submit(() -> run(segment, cursor));
+		pending.add(segment);
+
+		while (pending.size() >= window)
+		{
+			report(pending.removeFirst());
+		}
+	}
+
+	int submitted()
+	{
+		return submitted;
+	}
+
+	int failed()
+	{
+		return failed;
+	}
+
+	/**
+	 * Waits for and reports the remaining segments, then restores System.out.
+	 */
+	@Override
+	public void close()
+	{
+		try
+		{
+			while (! pending.isEmpty())
+			{
+				report(pending.removeFirst());
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+			System.setOut(systemOut);
+		}
+	}
+
+	private void run(Segment segment, MenuCursor cursor)
+	{
+		routed.bind(segment.output);
+
+		try
+		{
+			callback.invoke(segment.cmd);    // Callback gets to see the command.
+			mm.invoke(cursor, segment.cmd);  // The copy executes application logic.
+		}
+		catch (RuntimeException e)
+		{
+			segment.failure = e;
+		}
+		finally
+		{
+			routed.unbind();
+		}
+	}
+
+	private void report(Segment segment)
+	{
+		try
+		{
+			segment.future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for batch segment", e);
+		}
+		catch (ExecutionException e)
+		{
+			segment.failure = e.getCause();
+		}
+
+		try
+		{
+			segment.output.writeTo(out);
+			out.flush();
+		}
+		catch (IOException e)
+		{
+			// PrintStream.write does not throw.
+			//
+			throw new IllegalStateException(e);
+		}
+
+		if (segment.failure != null)
+		{
+			failed++;
+			out.println("Segment [" + segment.number + "] failed: [" + segment.cmd + "] " + segment.failure);
+		}
+	}
+
+	/**
+	 * One command line of the section, with its buffered output.  The fields
+	 * written by the worker are read after Future.get(), which orders them.
+	 */
+	private static final class Segment
+	{
+		private final int                   number;
+		private final String                cmd;
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		private Future<?> future;
+		private Throwable failure;
+
+		private Segment(int number, String cmd)
+		{
+			this.number = number;
+			this.cmd    = cmd;
+		}
+	}
+}
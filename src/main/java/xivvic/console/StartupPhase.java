@@ -0,0 +1,278 @@
+package xivvic.console;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import xivvic.console.action.Action;
+import xivvic.console.action.ActionTiming;
+
+/**
+ * Runs the actions of one startup phase, INITIALIZE or POST_INITIALIZE, as a
+ * dependency graph on a pool of threads.
+ *
+ * An action starts once every action it depends on has completed, so actions
+ * with no dependency between them run at the same time.  Dependencies name
+ * actions of the same phase, or of a phase that has already run.  Unknown
+ * names and cycles are reported before any action runs.
+ *
+ * Only a phase in which some action declares a dependency runs in parallel.
+ * A phase with none runs its actions one at a time, in registration order, as
+ * init actions always ran before dependencies could be declared.
+ *
+ * The first failure stops the phase: no further action is started, actions
+ * still running are interrupted, and the failure is thrown.  Each action's
+ * run time is reported as it completes.
+ *
+ * Not thread safe; a phase is run by the thread running setup.
+ */
+class StartupPhase
+{
+	private final ActionTiming          timing;
+	private final List<Node>            nodes = new ArrayList<>();
+	private final Set<String>           done;
+	private final PrintStream           out;
+	private final int                   threads;
+
+	private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+	/**
+	 * @param timing the phase
+	 * @param actions the actions of the phase, in registration order
+	 * @param dependencies the names each action depends on; actions left out depend on nothing
+	 * @param done names of the actions of phases already run.  The names of this
+	 * phase's actions are added once it completes.
+	 * @param out where timings are reported
+	 * @param threads the most actions run at once, if any action declares a dependency
+	 */
+	StartupPhase(ActionTiming timing, List<Action> actions, Map<Action, String[]> dependencies, Set<String> done, PrintStream out, int threads)
+	{
+		this.timing  = Objects.requireNonNull(timing);
+		this.done    = Objects.requireNonNull(done);
+		this.out     = Objects.requireNonNull(out);
+
+		Map<String, List<Node>> byName = new HashMap<>();
+		boolean               declared = false;
+
+		for (Action action : actions)
+		{
+			Node node = new Node(action);
+			nodes.add(node);
+			byName.computeIfAbsent(action.name(), k -> new ArrayList<>()).add(node);
+		}
+
+		for (Node node : nodes)
+		{
+			String[] names = dependencies.get(node.action);
+			if (names == null || names.length == 0)
+			{
+				continue;
+			}
+
+			declared = true;
+
+			for (String name : names)
+			{
+				List<Node> targets = byName.get(name);
+
+				if (targets != null)
+				{
+					node.dependencies.addAll(targets);
+				}
+				else if (! done.contains(name))
+				{
+					String msg = timing + " action [" + node.action.name() + "] depends on unknown action [" + name + "]";
+					throw new IllegalStateException(msg);
+				}
+			}
+		}
+
+		this.threads = declared ? Math.max(1, threads) : 1;
+	}
+
+	/**
+	 * Runs the phase and waits for it to complete.
+	 *
+	 * @throws IllegalStateException if the dependencies hold a cycle, or an action fails
+	 */
+	void run()
+	{
+		if (nodes.isEmpty())
+		{
+			return;
+		}
+
+		List<Node> order = topologicalOrder();
+		long       start = System.nanoTime();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, nodes.size()), r ->
+		{
+			Thread t = new Thread(r, "init-action");
+			t.setDaemon(true);
+			return t;
+		});
+
+		CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+
+		try
+		{
+			// Dependencies come first in the order, so their futures exist.
+			//
+			for (Node node : order)
+			{
+				CompletableFuture<?>[] deps = new CompletableFuture<?>[node.dependencies.size()];
+				for (int i = 0; i < deps.length; i++)
+				{
+					deps[i] = node.dependencies.get(i).future;
+				}
+
+				node.future = CompletableFuture.allOf(deps).thenRunAsync(() -> invoke(node), pool);
+				node.future.whenComplete((v, t) ->
+				{
+					if (t != null)
+					{
+						firstFailure.completeExceptionally(t);
+					}
+				});
+			}
+
+			CompletableFuture<?>[] all = new CompletableFuture<?>[order.size()];
+			for (int i = 0; i < all.length; i++)
+			{
+				all[i] = order.get(i).future;
+			}
+
+			CompletableFuture.allOf(all).thenRun(() -> firstFailure.complete(null));
+
+			firstFailure.join();
+		}
+		catch (CompletionException | CancellationException e)
+		{
+			RuntimeException cause = failure.get();
+			throw cause != null ? cause : new IllegalStateException(timing + " phase failed", e);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+
+		for (Node node : nodes)
+		{
+			done.add(node.action.name());
+		}
+
+		long ms = (System.nanoTime() - start) / 1000000;
+		out.println(timing + " phase ran [" + nodes.size() + "] actions in [" + ms + "] ms.");
+	}
+
+	private void invoke(Node node)
+	{
+		if (failure.get() != null)
+		{
+			throw new CancellationException();
+		}
+
+		String name = node.action.name();
+		long  start = System.nanoTime();
+
+		try
+		{
+			node.action.invoke(null);
+		}
+		catch (RuntimeException | Error e)
+		{
+			long ms = (System.nanoTime() - start) / 1000000;
+			String msg = timing + " action [" + name + "] failed after [" + ms + "] ms: " + e;
+
+			failure.compareAndSet(null, new IllegalStateException(msg, e));
+			throw e;
+		}
+
+		long ms = (System.nanoTime() - start) / 1000000;
+		out.println(timing + " action [" + name + "] completed in [" + ms + "] ms.");
+	}
+
+	// Kahn's algorithm.  Ties keep registration order, so with one thread the
+	// actions run in the order they were registered whenever the graph allows.
+	//
+	private List<Node> topologicalOrder()
+	{
+		Map<Node, Integer>    waiting = new HashMap<>();
+		Map<Node, List<Node>> blocked = new HashMap<>();
+		Deque<Node>             ready = new ArrayDeque<>();
+
+		for (Node node : nodes)
+		{
+			waiting.put(node, node.dependencies.size());
+
+			for (Node dep : node.dependencies)
+			{
+				blocked.computeIfAbsent(dep, k -> new ArrayList<>()).add(node);
+			}
+
+			if (node.dependencies.isEmpty())
+			{
+				ready.add(node);
+			}
+		}
+
+		List<Node> order = new ArrayList<>();
+
+		while (! ready.isEmpty())
+		{
+			Node node = ready.removeFirst();
+			order.add(node);
+
+			for (Node next : blocked.getOrDefault(node, Collections.<Node>emptyList()))
+			{
+				int count = waiting.merge(next, -1, Integer::sum);
+				if (count == 0)
+				{
+					ready.add(next);
+				}
+			}
+		}
+
+		if (order.size() < nodes.size())
+		{
+			List<String> cycle = new ArrayList<>();
+			for (Node node : nodes)
+			{
+				if (waiting.get(node) > 0)
+				{
+					cycle.add(node.action.name());
+				}
+			}
+
+			throw new IllegalStateException(timing + " actions have a dependency cycle among " + cycle);
+		}
+
+		return order;
+	}
+
+	private static final class Node
+	{
+		private final Action     action;
+		private final List<Node> dependencies = new ArrayList<>();
+
+		private CompletableFuture<Void> future;
+
+		private Node(Action action)
+		{
+			this.action = action;
+		}
+	}
+}
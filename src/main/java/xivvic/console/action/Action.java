@@ -1,5 +1,8 @@
 package xivvic.console.action;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import xivvic.console.util.Enablement;
 
 public interface Action
@@ -24,4 +27,29 @@ extends Enablement
 	 * @param param
 	 */
 	public void invoke(Object param);
+
+	/**
+	 * Whether the action may run off the thread that selected it.  The menu loop
+	 * runs async actions with {@link #invokeAsync(Object, Executor)} and goes on
+	 * accepting input while they complete.
+	 *
+	 * @return true if the action can be invoked asynchronously
+	 */
+	public default boolean isAsync()
+	{
+		return false;
+	}
+
+	/**
+	 * Invoke the action on the executor.  The future completes when the action
+	 * returns, or exceptionally with whatever the action threw.
+	 *
+	 * @param param the action parameter
+	 * @param executor runs the action
+	 * @return a future tracking the invocation
+	 */
+	public default CompletableFuture<Void> invokeAsync(Object param, Executor executor)
+	{
+		return CompletableFuture.runAsync(() -> invoke(param), executor);
+	}
 }
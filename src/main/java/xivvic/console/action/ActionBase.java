@@ -1,5 +1,7 @@
 package xivvic.console.action;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import lombok.Data;
 import lombok.experimental.Accessors;
 
@@ -15,10 +17,21 @@ import lombok.experimental.Accessors;
 public abstract class ActionBase
 implements Action
 {
+	/**
+	 * Bumped whenever an action changes its enablement state, so that views of
+	 * actions, such as rendered menus, can tell whether they are stale.
+	 */
+	private static final AtomicLong STATE_VERSION = new AtomicLong();
+
 	private final String name;
 	private final String description;
 	private boolean is_enabled;
 
+	/**
+	 * When true, the menu loop does not wait for the action.  See {@link Action#isAsync()}.
+	 */
+	private boolean async;
+
 	public ActionBase(String name, String description, boolean enabled)
 	{
 		this.name        = name;
@@ -37,8 +50,14 @@ implements Action
 		return this.getClass().getSimpleName();
 	}
 
+	@Override
+	public boolean isAsync()
+	{
+		return async;
+	}
+
 	// Template method to eliminate the need for Action subclasses to
-	// check for enabled status
+	// check for enabled status, and to record metrics.
 	//
 	@Override
 	public final void invoke(Object param)
@@ -48,8 +67,18 @@ implements Action
 			return;
 		}
 
-		internal_invoke(param);
-		// NOP.
+		long   start = ActionMetrics.start();
+		boolean fail = true;
+
+		try
+		{
+			internal_invoke(param);
+			fail = false;
+		}
+		finally
+		{
+			ActionMetrics.record(name(), start, fail);
+		}
 	}
 
 	/**
@@ -64,13 +93,41 @@ implements Action
 	@Override
 	public final void enable()
 	{
-		is_enabled = true;
+		is_enabled(true);
 	}
 
 	@Override
 	public final void disable()
 	{
-		is_enabled = false;
+		is_enabled(false);
+	}
+
+	public ActionBase is_enabled(boolean enabled)
+	{
+		if (is_enabled != enabled)
+		{
+			is_enabled = enabled;
+			STATE_VERSION.incrementAndGet();
+		}
+
+		return this;
+	}
+
+	/**
+	 * Records an enablement change made by an action that does not extend this class.
+	 */
+	static void stateChanged()
+	{
+		STATE_VERSION.incrementAndGet();
+	}
+
+	/**
+	 * Version of the enablement state of all actions.  Changes whenever any
+	 * action is enabled or disabled.
+	 */
+	public static long stateVersion()
+	{
+		return STATE_VERSION.get();
 	}
 
 }
@@ -3,12 +3,17 @@ package xivvic.console.action;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * The ActionManager contains references to all the actions that the application can
@@ -29,6 +34,13 @@ import java.util.Set;
  * Commands are associated with a name and a context.  If the context is null,
  * it is assumed to be a "global context"
  *
+ * @Threadsafe
+ * Reads never lock.  Writers are serialized and publish immutable snapshots, one per
+ * context, so a reader sees either all or none of the names added by a single
+ * registration.  A registration copies only the part of its context's table on
+ * the path to each new name, and the sorted names of a context are built when
+ * they are first read.
+ *
  * @author reid
  */
 public class ActionManager
@@ -36,19 +48,51 @@ public class ActionManager
 	public static final String	GLOBAL_CONTEXT	= "";
 	public static final String	DELIMITER	   = ".";
 
+	public static final int SUGGEST_DISTANCE = 2;
+	public static final int SUGGEST_LIMIT    = 5;
+
 	/**
 	 * Contexts are locations where actions are bound and form a (possibly empty for
 	 * global actions) prefix that gets added to a command for lookup.
+	 *
+	 * Published as a sorted array, replaced whenever a new context is registered.
+	 */
+	private volatile String[] contexts = new String[0];
+
+	/**
+	 * Commands by context, as a two level table: context to bucket, then verb to action.
+	 * Both levels hash and compare case-insensitively in place, so resolving a command
+	 * allocates nothing.
+	 *
+	 * Each bucket is immutable and holds the commands bound to one context along with
+	 * their names, kept sorted so that listing a single context never has to scan the
+	 * commands of every other context.  The context table is only copied when a new
+	 * context appears; otherwise a registration swaps the bucket held by its binding.
 	 */
-	private final Set<String>         contexts = new HashSet<>();
-	private final Map<String, Action> commands = new HashMap<>();
+	private volatile CommandTable<Binding> bindings = CommandTable.empty();
 
 	/**
 	 * Specials are actions that are invoked as part of the application's life-cycle, rather
 	 * than through user interaction. An example would be cleanup actions that happen upon
 	 * termination.
+	 *
+	 * Published copy-on-write; the lists are never modified once published.
+	 */
+	private volatile Map<ActionTiming, List<Action>> specials = new EnumMap<>(ActionTiming.class);
+
+	/**
+	 * Bumped by every registration.  Used to tag the cached list of all commands.
+	 */
+	private volatile long version = 0;
+	private volatile AllCommands all = new AllCommands(0, new String[0]);
+
+	private final Object writeLock = new Object();
+
+	/**
+	 * Registrations waiting to be published while {@link #registerAll(Consumer)}
+	 * runs.  Guarded by the write lock.
 	 */
-	private final Map<ActionTiming, List<Action>> specials = new HashMap<>();
+	private Staged staged = null;
 
 	public ActionManager() {}
 
@@ -59,77 +103,292 @@ public class ActionManager
 	 */
 	public String[] contexts()
 	{
-		String[] result = new String[0];
+		return contexts.clone();
+	}
 
-		synchronized(this)
+	/**
+	 * Return a sorted list of commands for a specified context.
+	 * If the context is null or the empty string, it returns global commands.
+	 *
+	 * @return
+	 */
+	public String[] commands(String context)
+	{
+		Binding binding = bindings.get(context);
+
+		if (binding == null)
 		{
-			result = contexts.toArray(result);;
+			return new String[0];
 		}
 
-		Arrays.sort(result);
-		return result;
+		return binding.bucket.names().clone();
 	}
 
 	/**
-	 * Return a sorted list of commands for a specified context.
-	 * If the context is null or the empty string, it returns global commands.
+	 * Return a sorted list of all commands.
 	 *
 	 * @return
 	 */
-	public String[] commands(String context)
+	public String[] commands()
 	{
-		Set<String> keys = null;
-		synchronized(this)
+		AllCommands cached = all;
+		long       current = version;
+
+		if (cached.version == current)
 		{
-			keys = commands.keySet();
+			return cached.keys.clone();
 		}
 
-		String[] rv = null;
+		// A registration racing with this loop may or may not be included,
+		// but each context contributes a consistent set of names.
+		//
+		List<String> list = new ArrayList<>();
+		bindings.forEach((context, binding) ->
+		{
+			for (String name : binding.bucket.names())
+			{
+				list.add(context + DELIMITER + name);
+			}
+		});
+
+		String[] rv = list.toArray(new String[list.size()]);
+		Arrays.sort(rv);
+
+		all = new AllCommands(current, rv);
+		return rv.clone();
+	}
+
+	/**
+	 * Resolve a command, ignoring case.  A null context is the global context.
+	 *
+	 * This is the innermost step of dispatching user input, so it does not allocate:
+	 * the context and name are hashed and compared in place.
+	 *
+	 * @param context the context the command is bound to, or null for the global context
+	 * @param name the command name or alias
+	 * @return the action, or null if no command matches
+	 */
+	public Action command(CharSequence context, CharSequence name)
+	{
+		Binding binding = bindings.get(context);
 
-		if (context == null || context.length() == 0)
+		if (binding == null)
 		{
-			rv = matchingStrings(keys, DELIMITER);
+			return null;
 		}
-		else
+
+		return binding.bucket.actions.get(name);
+	}
+
+	/**
+	 * Resolve an abbreviation: a prefix of the names of exactly one command in
+	 * the context, ignoring case.  Aliases of one action count as one command.
+	 *
+	 * @param context the context the abbreviation is resolved in, or null for the global context
+	 * @param prefix the abbreviation
+	 * @return the action, or null if no command or more than one starts with the prefix
+	 */
+	public Action abbreviation(CharSequence context, CharSequence prefix)
+	{
+		Binding binding = bindings.get(context);
+
+		if (binding == null || prefix == null || prefix.length() == 0)
 		{
-			rv = matchingStrings(keys, context + DELIMITER);
+			return null;
+		}
+
+		String[] names = binding.bucket.names();
+		String    fold = CommandTable.fold(prefix);
+		Action      rv = null;
+
+		for (int i = lowerBound(names, fold); i < names.length && names[i].startsWith(fold); i++)
+		{
+			Action action = binding.bucket.actions.get(names[i]);
+
+			if (rv != null && rv != action)
+			{
+				return null;
+			}
+
+			rv = action;
 		}
 
-		Arrays.sort(rv);
 		return rv;
 	}
 
 	/**
-	 * Return a sorted list of all commands.
+	 * Complete a partial command.  Matches are found by binary search over the
+	 * sorted names of each context, so the cost grows with the number of
+	 * matches rather than the number of commands.
 	 *
-	 * @return
+	 * Without a delimiter, the result holds the names in the context that start
+	 * with the partial command, then those in the global context, then the
+	 * explicit context.verb form of every command in each other context whose
+	 * name starts with it.  With a delimiter, it holds the context.verb forms
+	 * of the named context's commands whose name starts with the text after
+	 * the delimiter.  Each group is sorted.
+	 *
+	 * @param context the active context, or null for the global context
+	 * @param partial the start of a command, possibly empty
+	 * @return the completions, in lower case except for the context as typed
 	 */
-	public String[] commands()
+	public List<String> complete(CharSequence context, CharSequence partial)
 	{
-		Set<String> keys = null;
-		synchronized(this)
+		String       text = partial == null ? "" : partial.toString();
+		List<String>   rv = new ArrayList<>();
+		int     delimiter = text.indexOf(DELIMITER);
+
+		if (delimiter >= 0)
 		{
-			keys = commands.keySet();
+			String explicit = text.substring(0, delimiter);
+			addCompletions(rv, bindings.get(explicit), explicit + DELIMITER, text.substring(delimiter + 1), null);
+			return rv;
+		}
+
+		String  local = context == null ? GLOBAL_CONTEXT : context.toString();
+		Binding    lb = bindings.get(local);
+		Binding    gb = bindings.get(GLOBAL_CONTEXT);
+
+		addCompletions(rv, lb, "", text, null);
+		if (gb != lb)
+		{
+			addCompletions(rv, gb, "", text, lb);
+		}
+
+		// Contexts differing only in case share a binding; list its commands once.
+		//
+		Set<Binding> added = Collections.newSetFromMap(new IdentityHashMap<>());
+		added.add(lb);
+		added.add(gb);
+
+		String fold = CommandTable.fold(text);
+		for (String c : contexts)
+		{
+			Binding binding = bindings.get(c);
+
+			if (binding != null && CommandTable.fold(c).startsWith(fold) && added.add(binding))
+			{
+				addCompletions(rv, binding, c + DELIMITER, "", null);
+			}
 		}
 
-		String[] rv = keys.toArray(new String[0]);
-		Arrays.sort(rv);
 		return rv;
 	}
 
-	public Action command(String context, String name)
+	// Adds the names in the binding that start with the prefix, except those
+	// also bound in the shadowing binding, which have already been added.
+	//
+	private static void addCompletions(List<String> rv, Binding binding, String qualifier, String prefix, Binding shadowing)
 	{
-		String key = makekey(context, name);
-		Action  rv = null;
+		if (binding == null)
+		{
+			return;
+		}
+
+		String[] names = binding.bucket.names();
+		String    fold = CommandTable.fold(prefix);
 
-		synchronized (this)
+		for (int i = lowerBound(names, fold); i < names.length && names[i].startsWith(fold); i++)
 		{
-			rv = commands.get(key);
+			if (shadowing == null || shadowing.bucket.actions.get(names[i]) == null)
+			{
+				rv.add(qualifier + names[i]);
+			}
+		}
+	}
+
+	// Index of the first name not less than the key.
+	//
+	private static int lowerBound(String[] names, String key)
+	{
+		int i = Arrays.binarySearch(names, key);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	/**
+	 * Suggest commands for a name that did not resolve, from the context and
+	 * the global context, within {@link #SUGGEST_DISTANCE} edits.
+	 *
+	 * @see #suggest(CharSequence, CharSequence, int, int)
+	 */
+	public List<String> suggest(CharSequence context, CharSequence name)
+	{
+		return suggest(context, name, SUGGEST_DISTANCE, SUGGEST_LIMIT);
+	}
+
+	/**
+	 * Suggest commands for a name that did not resolve.  Commands bound to the
+	 * context and to the global context are considered, ignoring case, by
+	 * edit distance.  A command is only suggested if some character of the
+	 * name survives the edits, so a single letter does not suggest every other
+	 * single letter.
+	 *
+	 * @param context the context the name was entered in, or null for the global context
+	 * @param name the name that did not resolve
+	 * @param maxDistance the most edits a suggestion may be from the name
+	 * @param limit the most suggestions returned
+	 * @return command names, closest first, then alphabetically; possibly empty
+	 */
+	public List<String> suggest(CharSequence context, CharSequence name, int maxDistance, int limit)
+	{
+		if (name == null || name.length() == 0 || limit < 1)
+		{
+			return Collections.emptyList();
+		}
+
+		List<SuggestionIndex.Suggestion> found = new ArrayList<>();
+
+		Binding local = bindings.get(context);
+		if (local != null)
+		{
+			found.addAll(local.index.near(name, maxDistance));
+		}
+
+		Binding global = bindings.get(GLOBAL_CONTEXT);
+		if (global != null && global != local)
+		{
+			found.addAll(global.index.near(name, maxDistance));
+		}
+
+		found.sort(SuggestionIndex.CLOSEST);
+
+		List<String> rv = new ArrayList<>();
+		for (SuggestionIndex.Suggestion s : found)
+		{
+			if (rv.size() == limit)
+			{
+				break;
+			}
+
+			// Replacing every character is not a near miss.
+			//
+			if (s.distance >= Math.max(name.length(), s.name.length()))
+			{
+				continue;
+			}
+
+			if (! containsIgnoreCase(rv, s.name))
+			{
+				rv.add(s.name);
+			}
 		}
 
 		return rv;
 	}
 
+	private static boolean containsIgnoreCase(List<String> names, String name)
+	{
+		for (String n : names)
+		{
+			if (n.equalsIgnoreCase(name))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * Registers a "normal" command, meant be invoked by a menu action.
 	 *
@@ -143,48 +402,158 @@ public class ActionManager
 
 		context = context == null ? GLOBAL_CONTEXT : context;
 
-		String name = action.name();
-		String  key = makekey(context, name);
+		String[] names = new String[aliases.length + 1];
+		names[0] = action.name();
+		System.arraycopy(aliases, 0, names, 1, aliases.length);
 
-		synchronized (this)
+		synchronized (writeLock)
 		{
-			contexts.add(context);
-			commands.put(key, action);
+			publish(context, action, names);
+			addContext(context);
 		}
+	}
+
+	/**
+	 * Registers a command whose action is only built when it is first invoked.
+	 * See {@link LazyAction}.
+	 *
+	 * @param name the action name, used as the command name
+	 * @param description the action description
+	 * @param supplier builds the action
+	 * @param context the context for action lookup (e.g. a menu location), or null for the global context
+	 * @param aliases a list of alternative names for the action
+	 * @return the placeholder that was registered
+	 */
+	public LazyAction register(String name, String description, Supplier<? extends Action> supplier, String context, String... aliases)
+	{
+		LazyAction action = new LazyAction(name, description, supplier);
+		register(action, context, aliases);
+		return action;
+	}
 
-		for (String alias: aliases)
+	/**
+	 * Runs a group of registrations and publishes them together.
+	 *
+	 * Inside this method registrations, including new contexts and special
+	 * commands, are collected and published when the group returns, each context
+	 * once, so its sorted names are rebuilt once for the group rather than once
+	 * per registration.  Readers see nothing of the group before it returns, and
+	 * never part of the group's additions to one context, but may see one context
+	 * published before another.  If the group throws, nothing it registered is
+	 * published.  Other threads that register meanwhile wait.
+	 *
+	 * @param registrations calls the register methods of this manager
+	 */
+	public void registerAll(Consumer<ActionManager> registrations)
+	{
+		Objects.requireNonNull(registrations);
+
+		synchronized (writeLock)
 		{
-			String akey = makekey(context, alias);
+			if (staged != null)
+			{
+				// Already collecting.
+				//
+				registrations.accept(this);
+				return;
+			}
 
-			synchronized (this)
+			Staged pending = new Staged();
+			staged = pending;
+
+			try
+			{
+				registrations.accept(this);
+			}
+			finally
 			{
-				contexts.add(context);
-				commands.put(akey, action);
+				staged = null;
 			}
+
+			// Commands before contexts, so a context is never listed before it
+			// can be resolved.
+			//
+			for (Map.Entry<String, Map<String, Action>> e : pending.commands.entrySet())
+			{
+				Binding binding = bind(e.getKey());
+				binding.bucket  = binding.bucket.with(e.getValue());
+
+				for (String name : e.getValue().keySet())
+				{
+					binding.index.add(name);
+				}
+			}
+
+			for (String context : pending.contexts)
+			{
+				addContext(context);
+			}
+
+			for (Map.Entry<ActionTiming, List<Action>> e : pending.specials.entrySet())
+			{
+				addSpecials(e.getKey(), e.getValue());
+			}
+
+			version++;
 		}
 	}
 
 	/**
-	 * Registers a "normal" command, meant be invoked by a menu action.
+	 * Finds every {@link ActionProvider} on the class path of the context class
+	 * loader and lets each register its actions.  See {@link #loadProviders(ClassLoader)}.
+	 */
+	public int loadProviders()
+	{
+		return loadProviders(Thread.currentThread().getContextClassLoader());
+	}
+
+	/**
+	 * Finds every {@link ActionProvider} visible to the class loader with
+	 * {@link ServiceLoader}, and lets each register its actions.  All the
+	 * registrations are published together, see {@link #registerAll(Consumer)}.
+	 *
+	 * @return the number of providers found
+	 * @throws java.util.ServiceConfigurationError if a provider cannot be loaded
+	 */
+	public int loadProviders(ClassLoader loader)
+	{
+		int[] count = new int[1];
+
+		registerAll(am ->
+		{
+			for (ActionProvider provider : ServiceLoader.load(ActionProvider.class, loader))
+			{
+				provider.provide(am);
+				count[0]++;
+			}
+		});
+
+		return count[0];
+	}
+
+	/**
+	 * Registers a "special" command, meant to be invoked by the application at the
+	 * point in its life-cycle given by the timing.
 	 *
 	 * @param action the action to register
-	 * @param context the context for action lookup (e.g. a menu location), or null for the global context
-	 * @param aliases a list of alternative names for the action e.g. "bye", "quit", "exit"
+	 * @param timing when the application should invoke the action
 	 */
 	public void register(Action action, ActionTiming timing)
 	{
 		Objects.requireNonNull(action);
 		Objects.requireNonNull(timing);
 
-		String name = action.name();
-		String  key = makekey(timing.name(), name);
-
-		synchronized (this)
+		synchronized (writeLock)
 		{
-			commands.put(key, action);
-			List<Action> list = specials.getOrDefault(timing, new ArrayList<Action>());
-			list.add(action);
-			specials.put(timing, list);
+			publish(timing.name(), action, action.name());
+
+			if (staged != null)
+			{
+				staged.specials.computeIfAbsent(timing, k -> new ArrayList<>()).add(action);
+				return;
+			}
+
+			addSpecials(timing, Collections.singletonList(action));
 		}
 	}
 
@@ -195,47 +564,162 @@ public class ActionManager
 			return Collections.emptyList();
 		}
 
-		List<Action> list = specials.getOrDefault(timing, new ArrayList<Action>());
-		return Collections.unmodifiableList(list);
+		return specials.getOrDefault(timing, Collections.<Action>emptyList());
 	}
 
-	private String makekey(String left, String right)
+	// Callers must hold the write lock.
+	//
+	private void addSpecials(ActionTiming timing, List<Action> added)
 	{
-		if (left == null)
+		Map<ActionTiming, List<Action>> next = new EnumMap<>(ActionTiming.class);
+		next.putAll(specials);
+
+		List<Action> list = new ArrayList<>(next.getOrDefault(timing, Collections.<Action>emptyList()));
+		list.addAll(added);
+		next.put(timing, Collections.unmodifiableList(list));
+
+		specials = next;
+	}
+
+	// Callers must hold the write lock.
+	//
+	private void addContext(String context)
+	{
+		if (staged != null)
 		{
-			left = "";
+			staged.contexts.add(context);
+			return;
 		}
-		else
+
+		String[] current = contexts;
+		if (Arrays.binarySearch(current, context) >= 0)
+		{
+			return;
+		}
+
+		String[] next = Arrays.copyOf(current, current.length + 1);
+		next[current.length] = context;
+		Arrays.sort(next);
+
+		contexts = next;
+	}
+
+	// Callers must hold the write lock.
+	//
+	private void publish(String context, Action action, String... names)
+	{
+		if (staged != null)
 		{
-			left = left.toLowerCase();
+			Map<String, Action> pending = staged.commands.computeIfAbsent(context, k -> new LinkedHashMap<>());
+			for (String name : names)
+			{
+				// Reinsert, so a later registration of the same name still wins.
+				//
+				pending.remove(name);
+				pending.put(name, action);
+			}
+			return;
 		}
 
-		if (right == null)
+		Binding binding = bind(context);
+		binding.bucket  = binding.bucket.with(action, names);
+		version++;
+
+		for (String name : names)
 		{
-			right = "";
+			binding.index.add(name);
 		}
-		else
+	}
+
+	// Callers must hold the write lock.
+	//
+	private Binding bind(String context)
+	{
+		Binding binding = bindings.get(context);
+
+		if (binding == null)
 		{
-			right = right.toLowerCase();
+			binding  = new Binding();
+			bindings = bindings.with(binding, context);
 		}
 
-		return left + DELIMITER + right;
+		return binding;
 	}
 
-	private String[] matchingStrings(Set<String> set, String match)
+	/**
+	 * Registrations collected by {@link #registerAll(Consumer)}.
+	 */
+	private static final class Staged
 	{
-		List<String> list = new ArrayList<>();
+		private final Map<String, Map<String, Action>> commands = new LinkedHashMap<>();
+		private final Set<String>                      contexts = new LinkedHashSet<>();
+		private final Map<ActionTiming, List<Action>>  specials = new EnumMap<>(ActionTiming.class);
+	}
 
-		for (String key : set)
+	/**
+	 * Holder for the current bucket of one context, and the index of every
+	 * name ever bound to it.
+	 */
+	private static final class Binding
+	{
+		private volatile Bucket          bucket = Bucket.EMPTY;
+		private final    SuggestionIndex index  = new SuggestionIndex();
+	}
+
+	/**
+	 * Immutable set of commands bound to one context.
+	 */
+	private static final class Bucket
+	{
+		private static final Bucket EMPTY = new Bucket(CommandTable.<Action>empty());
+
+		private final    CommandTable<Action> actions;
+		private volatile String[]             names;
+
+		private Bucket(CommandTable<Action> actions)
 		{
-			if (key.startsWith(match))
+			this.actions = actions;
+		}
+
+		// Sorted on first read, so a run of registrations to a context does not
+		// sort it each time.  Racing readers may both sort; either result is kept.
+		//
+		String[] names()
+		{
+			String[] rv = names;
+
+			if (rv == null)
 			{
-				String cmd = key.substring(match.length());
-				list.add(cmd);
+				rv    = actions.sortedKeys();
+				names = rv;
 			}
+
+			return rv;
 		}
-		String[] rv = list.toArray(new String[0]);
 
-		return rv;
+		Bucket with(Action action, String... added)
+		{
+			return new Bucket(actions.with(action, added));
+		}
+
+		Bucket with(Map<String, Action> added)
+		{
+			return new Bucket(actions.with(added));
+		}
+	}
+
+	/**
+	 * Sorted list of every command key, tagged with the version it was built from.
+	 */
+	private static final class AllCommands
+	{
+		private final long     version;
+		private final String[] keys;
+
+		private AllCommands(long version, String[] keys)
+		{
+			this.version = version;
+			this.keys    = keys;
+		}
 	}
 }
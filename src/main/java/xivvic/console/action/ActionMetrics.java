@@ -0,0 +1,380 @@
+package xivvic.console.action;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * ActionMetrics counts invocations and failures, and records a latency histogram,
+ * for every action by name.
+ *
+ * {@link ActionBase} and {@link xivvic.console.menu.MenuManager} record each
+ * invocation.  Recording is off by default.  While it is off, an invocation pays
+ * for one volatile read.  While it is on, it pays for two clock reads, a map
+ * lookup and a few atomic increments; nothing locks.
+ *
+ * The numbers are shown by the hidden "stats" command, see
+ * {@link xivvic.console.menu.MenuManager#addMetricsActions()}, and through JMX
+ * once {@link #registerMBeans()} is called.
+ *
+ * @Threadsafe
+ */
+public final class ActionMetrics
+{
+	public static final String JMX_DOMAIN = "xivvic.console";
+
+	/**
+	 * Returned by {@link #start()} when recording is off.
+	 */
+	public static final long DISABLED = Long.MIN_VALUE;
+
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+	private static volatile boolean enabled = Boolean.getBoolean("xivvic.console.metrics");
+	private static volatile boolean jmx     = false;
+
+	private static final ConcurrentMap<String, Stats> STATS = new ConcurrentHashMap<>();
+
+	// Static only class.
+	//
+	private ActionMetrics() {}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public static void setEnabled(boolean on)
+	{
+		enabled = on;
+	}
+
+	/**
+	 * Marks the start of an invocation.
+	 *
+	 * @return the start time to pass to {@link #record(String, long, boolean)}, or
+	 * {@link #DISABLED} if recording is off
+	 */
+	public static long start()
+	{
+		return enabled ? System.nanoTime() : DISABLED;
+	}
+
+	/**
+	 * Records an invocation that began at the start time.  Nop if the start time
+	 * is {@link #DISABLED}.
+	 *
+	 * @param action the action name
+	 * @param start the value returned by {@link #start()}
+	 * @param failed true if the invocation threw
+	 */
+	public static void record(String action, long start, boolean failed)
+	{
+		if (start == DISABLED)
+		{
+			return;
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		Stats stats = STATS.get(action);
+		if (stats == null)
+		{
+			stats = STATS.computeIfAbsent(action, ActionMetrics::create);
+		}
+
+		stats.invocations.increment();
+		if (failed)
+		{
+			stats.errors.increment();
+		}
+		stats.latency.record(elapsed);
+	}
+
+	/**
+	 * Returns the numbers for every action invoked while recording was on,
+	 * sorted by action name.
+	 */
+	public static List<Snapshot> snapshot()
+	{
+		List<Snapshot> rv = new ArrayList<>();
+
+		for (Stats stats : STATS.values())
+		{
+			rv.add(stats.snapshot());
+		}
+
+		Collections.sort(rv, (a, b) -> a.action().compareTo(b.action()));
+		return rv;
+	}
+
+	/**
+	 * Returns the numbers for one action, or null if it has not been recorded.
+	 */
+	public static Snapshot snapshot(String action)
+	{
+		Stats stats = STATS.get(action);
+		return stats == null ? null : stats.snapshot();
+	}
+
+	/**
+	 * Clears the numbers of every action.  Invocations that finish during the
+	 * reset may be partly counted.
+	 */
+	public static void reset()
+	{
+		for (Stats stats : STATS.values())
+		{
+			stats.invocations.reset();
+			stats.errors.reset();
+			stats.latency.reset();
+		}
+	}
+
+	/**
+	 * Formats the numbers as a table, one action per line, latencies in
+	 * microseconds.
+	 */
+	public static String report()
+	{
+		StringBuilder sb = new StringBuilder();
+		String       fmt = "%-24s %10s %8s %10s %10s %10s %10s%n";
+
+		sb.append(String.format(Locale.ROOT, fmt, "action", "count", "errors", "p50 us", "p99 us", "p999 us", "max us"));
+
+		for (Snapshot s : snapshot())
+		{
+			sb.append(String.format(Locale.ROOT, fmt,
+					s.action(),
+					s.count(),
+					s.errors(),
+					micros(s.p50()),
+					micros(s.p99()),
+					micros(s.p999()),
+					micros(s.max())));
+		}
+
+		if (! enabled)
+		{
+			sb.append("Recording is off.").append(System.lineSeparator());
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server: one control bean, and
+	 * one bean per action, including actions first invoked later.
+	 */
+	public static synchronized void registerMBeans()
+	{
+		if (jmx)
+		{
+			return;
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try
+		{
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":type=ActionMetrics");
+			if (! server.isRegistered(name))
+			{
+				server.registerMBean(new Control(), name);
+			}
+		}
+		catch (JMException e)
+		{
+			throw new IllegalStateException("Unable to register action metrics MBean", e);
+		}
+
+		jmx = true;
+
+		for (Stats stats : STATS.values())
+		{
+			register(stats);
+		}
+	}
+
+	private static Stats create(String action)
+	{
+		Stats stats = new Stats(action);
+
+		if (jmx)
+		{
+			register(stats);
+		}
+
+		return stats;
+	}
+
+	private static void register(Stats stats)
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try
+		{
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":type=ActionMetrics,action=" + ObjectName.quote(stats.action));
+			if (! server.isRegistered(name))
+			{
+				server.registerMBean(new ActionBean(stats), name);
+			}
+		}
+		catch (JMException e)
+		{
+			// Metrics must never break an action.
+			//
+		}
+	}
+
+	private static String micros(long nanos)
+	{
+		return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+	}
+
+	/**
+	 * Numbers for one action at one point in time.  Latencies are in nanoseconds.
+	 */
+	@Data
+	@Accessors(fluent = true)
+	public static final class Snapshot
+	{
+		private final String action;
+		private final long   count;
+		private final long   errors;
+		private final long   p50;
+		private final long   p99;
+		private final long   p999;
+		private final long   max;
+	}
+
+	/**
+	 * JMX view of the metrics as a whole.
+	 */
+	public interface ControlMXBean
+	{
+		boolean isEnabled();
+		void    setEnabled(boolean enabled);
+		void    reset();
+		String  getReport();
+	}
+
+	/**
+	 * JMX view of one action.  Latencies are in microseconds.
+	 */
+	public interface ActionMXBean
+	{
+		long   getCount();
+		long   getErrors();
+		double getP50Micros();
+		double getP99Micros();
+		double getP999Micros();
+		double getMaxMicros();
+	}
+
+	private static final class Stats
+	{
+		private final String           action;
+		private final LongAdder        invocations = new LongAdder();
+		private final LongAdder        errors      = new LongAdder();
+		private final LatencyHistogram latency     = new LatencyHistogram();
+
+		private Stats(String action)
+		{
+			this.action = action;
+		}
+
+		Snapshot snapshot()
+		{
+			long[] q = latency.quantiles(QUANTILES);
+			return new Snapshot(action, invocations.sum(), errors.sum(), q[0], q[1], q[2], latency.max());
+		}
+	}
+
+	private static final class Control
+	implements ControlMXBean
+	{
+		@Override
+		public boolean isEnabled()
+		{
+			return ActionMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean on)
+		{
+			ActionMetrics.setEnabled(on);
+		}
+
+		@Override
+		public void reset()
+		{
+			ActionMetrics.reset();
+		}
+
+		@Override
+		public String getReport()
+		{
+			return ActionMetrics.report();
+		}
+	}
+
+	private static final class ActionBean
+	implements ActionMXBean
+	{
+		private final Stats stats;
+
+		private ActionBean(Stats stats)
+		{
+			this.stats = stats;
+		}
+
+		@Override
+		public long getCount()
+		{
+			return stats.invocations.sum();
+		}
+
+		@Override
+		public long getErrors()
+		{
+			return stats.errors.sum();
+		}
+
+		@Override
+		public double getP50Micros()
+		{
+			return stats.latency.quantiles(0.5)[0] / 1000.0;
+		}
+
+		@Override
+		public double getP99Micros()
+		{
+			return stats.latency.quantiles(0.99)[0] / 1000.0;
+		}
+
+		@Override
+		public double getP999Micros()
+		{
+			return stats.latency.quantiles(0.999)[0] / 1000.0;
+		}
+
+		@Override
+		public double getMaxMicros()
+		{
+			return stats.latency.max() / 1000.0;
+		}
+	}
+}
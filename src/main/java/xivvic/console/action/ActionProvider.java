@@ -0,0 +1,22 @@
+package xivvic.console.action;
+
+/**
+ * ActionProvider is the service interface through which plugins contribute
+ * actions.  Providers are found with {@link java.util.ServiceLoader}: a plugin
+ * jar lists its implementation in
+ * META-INF/services/xivvic.console.action.ActionProvider, and
+ * {@link ActionManager#loadProviders()} calls each one.
+ *
+ * Providers should register their actions with
+ * {@link ActionManager#register(String, String, java.util.function.Supplier, String, String...)}
+ * so that an action is only built if it is used.
+ */
+public interface ActionProvider
+{
+	/**
+	 * Registers the provider's actions.
+	 *
+	 * @param am the registry to add the actions to
+	 */
+	public void provide(ActionManager am);
+}
@@ -0,0 +1,167 @@
+package xivvic.console.action;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * ActionResult is what a {@link ResultAction} returns: nothing, a value, a
+ * table, or a stream of records.
+ *
+ * Tables and streams are lazy.  Their rows are produced as they are read, so
+ * a result of any size can be returned without being held, and rows nobody
+ * reads are never produced.  They can be read once.
+ *
+ * A result made from a {@link Stream} closes the stream when it is closed.
+ * Whoever takes a result from an action closes it once done with it.
+ */
+public final class ActionResult
+implements AutoCloseable
+{
+	public enum Kind
+	{
+		/**
+		 * No result.
+		 */
+		NONE,
+
+		/**
+		 * A single value.  See {@link ActionResult#value()}.
+		 */
+		VALUE,
+
+		/**
+		 * Rows of cells, with an optional header.  See {@link ActionResult#header()}
+		 * and {@link ActionResult#rows()}.
+		 */
+		TABLE,
+
+		/**
+		 * A sequence of records.  See {@link ActionResult#records()}.
+		 */
+		STREAM,
+		;
+	}
+
+	private static final ActionResult NONE = new ActionResult(Kind.NONE, null, null, Collections.emptyIterator(), null);
+
+	private final Kind        kind;
+	private final Object      value;
+	private final String[]    header;
+	private final Iterator<?> records;
+	private final Runnable    onClose;
+
+	private ActionResult(Kind kind, Object value, String[] header, Iterator<?> records, Runnable onClose)
+	{
+		this.kind    = kind;
+		this.value   = value;
+		this.header  = header;
+		this.records = records;
+		this.onClose = onClose;
+	}
+
+	public static ActionResult none()
+	{
+		return NONE;
+	}
+
+	/**
+	 * @return a result holding the value, or no result if the value is null
+	 */
+	public static ActionResult of(Object value)
+	{
+		return value == null ? NONE : new ActionResult(Kind.VALUE, value, null, Collections.emptyIterator(), null);
+	}
+
+	/**
+	 * @param header column titles, or null for none
+	 * @param rows the rows, read as the result is
+	 */
+	public static ActionResult table(String[] header, Iterator<String[]> rows)
+	{
+		return new ActionResult(Kind.TABLE, null, header, Objects.requireNonNull(rows), null);
+	}
+
+	/**
+	 * @param header column titles, or null for none
+	 * @param rows the rows, closed with the result
+	 */
+	public static ActionResult table(String[] header, Stream<String[]> rows)
+	{
+		return new ActionResult(Kind.TABLE, null, header, rows.iterator(), rows::close);
+	}
+
+	public static ActionResult stream(Iterator<?> records)
+	{
+		return new ActionResult(Kind.STREAM, null, null, Objects.requireNonNull(records), null);
+	}
+
+	/**
+	 * @param records the records, closed with the result
+	 */
+	public static ActionResult stream(Stream<?> records)
+	{
+		return new ActionResult(Kind.STREAM, null, null, records.iterator(), records::close);
+	}
+
+	public Kind kind()
+	{
+		return kind;
+	}
+
+	/**
+	 * @return the value of a VALUE result, otherwise null
+	 */
+	public Object value()
+	{
+		return value;
+	}
+
+	/**
+	 * @return the column titles of a TABLE result, or null if it has none
+	 */
+	public String[] header()
+	{
+		return header;
+	}
+
+	/**
+	 * @return the rows of a TABLE result
+	 * @throws IllegalStateException if this is not a table
+	 */
+	@SuppressWarnings("unchecked")
+	public Iterator<String[]> rows()
+	{
+		if (kind != Kind.TABLE)
+		{
+			throw new IllegalStateException("Result is not a table: " + kind);
+		}
+
+		return (Iterator<String[]>) records;
+	}
+
+	/**
+	 * @return the records of a STREAM result, the rows of a TABLE result, or no
+	 * records for other results
+	 */
+	public Iterator<?> records()
+	{
+		return records;
+	}
+
+	@Override
+	public void close()
+	{
+		if (onClose != null)
+		{
+			onClose.run();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return kind == Kind.VALUE ? "ActionResult(" + value + ")" : "ActionResult(" + kind + ")";
+	}
+}
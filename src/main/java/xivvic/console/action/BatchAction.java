@@ -1,5 +1,8 @@
 package xivvic.console.action;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.util.Objects;
 
 /**
@@ -10,6 +13,14 @@ import java.util.Objects;
  * text commands that get translated into other actions as if the user had typed in the commands
  * immediately after startup.
  *
+ * Commands can be held in memory or streamed, one per line, from a Reader or a file.
+ * Streamed batches are read as they run, so scripts of any size use constant memory.
+ *
+ * A batch can mark sections of independent commands with the {@link #PARALLEL_BEGIN}
+ * and {@link #PARALLEL_END} directives, each alone on a line.  Each command line in a
+ * section may run at the same time as the others, starting from the menu the batch
+ * was on when the section began.
+ *
  * @author reid
  */
 public class BatchAction
@@ -17,7 +28,13 @@ extends ActionBase
 {
 	private static String NAME        = "Batch Action";
 	private static String DESCRIPTION = "Action that will hold commands for batch execution";
+
+	public static final String PARALLEL_BEGIN = "#parallel";
+	public static final String PARALLEL_END   = "#end";
+
 	String[] cmds = null;
+	Path     path = null;
+	Reader reader = null;
 
 
 	public BatchAction(String[] commands)
@@ -26,11 +43,53 @@ extends ActionBase
 		cmds = Objects.requireNonNull(commands).clone();
 	}
 
+	/**
+	 * A batch streamed, one command per line, from a UTF-8 file.
+	 * The file is opened each time the batch is run.
+	 */
+	public BatchAction(Path path)
+	{
+		super(NAME, DESCRIPTION, true);
+		this.path = Objects.requireNonNull(path);
+	}
+
+	/**
+	 * A batch streamed, one command per line, from a reader.
+	 * The reader can only be consumed once and is closed when the batch completes.
+	 */
+	public BatchAction(Reader reader)
+	{
+		super(NAME, DESCRIPTION, true);
+		this.reader = Objects.requireNonNull(reader);
+	}
+
+	/**
+	 * Returns the commands of an in-memory batch, or null for a streamed batch.
+	 * Use {@link #source()} to read the commands of any batch.
+	 */
 	public String[] commands()
 	{
 		return cmds;
 	}
 
+	/**
+	 * Opens the commands of this batch for reading.  The caller closes the source.
+	 */
+	public BatchSource source() throws IOException
+	{
+		if (cmds != null)
+		{
+			return BatchSource.of(cmds);
+		}
+
+		if (path != null)
+		{
+			return BatchSource.of(path);
+		}
+
+		return BatchSource.of(reader);
+	}
+
 	@Override
 	public void internal_invoke(Object param)
 	{
@@ -0,0 +1,124 @@
+package xivvic.console.action;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * A sequence of batch commands, read one at a time.
+ *
+ * Sources backed by a Reader or a file hold one buffer of text at a time, so a
+ * batch script of any size runs in constant memory.
+ */
+public interface BatchSource
+extends Closeable
+{
+	/**
+	 * Size of the read buffer used for streamed sources.
+	 */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Returns the next command, or null when the source is exhausted.
+	 */
+	public String next() throws IOException;
+
+	/**
+	 * Returns the number of commands in the source, or -1 if it is not known
+	 * without reading the whole source.
+	 */
+	public default long size()
+	{
+		return -1;
+	}
+
+	@Override
+	public default void close() throws IOException
+	{
+		// Nothing to release by default.
+	}
+
+	public static BatchSource of(String[] commands)
+	{
+		final String[] cmds = Objects.requireNonNull(commands);
+
+		return new BatchSource()
+		{
+			private int index = 0;
+
+			// Null entries are skipped; null marks the end of the source.
+			//
+			@Override
+			public String next()
+			{
+				while (index < cmds.length)
+				{
+					String cmd = cmds[index++];
+					if (cmd != null)
+					{
+						return cmd;
+					}
+				}
+
+				return null;
+			}
+
+			@Override
+			public long size()
+			{
+				return cmds.length;
+			}
+		};
+	}
+
+	/**
+	 * A source reading one command per line.  Closing the source closes the reader.
+	 */
+	public static BatchSource of(Reader reader)
+	{
+		Objects.requireNonNull(reader);
+
+		final BufferedReader in = reader instanceof BufferedReader
+		                        ? (BufferedReader) reader
+		                        : new BufferedReader(reader, BUFFER_SIZE);
+
+		return new BatchSource()
+		{
+			@Override
+			public String next() throws IOException
+			{
+				return in.readLine();
+			}
+
+			@Override
+			public void close() throws IOException
+			{
+				in.close();
+			}
+		};
+	}
+
+	/**
+	 * A source reading one command per line from a UTF-8 file.
+	 */
+	public static BatchSource of(Path path) throws IOException
+	{
+		return of(path, StandardCharsets.UTF_8);
+	}
+
+	public static BatchSource of(Path path, Charset charset) throws IOException
+	{
+		Objects.requireNonNull(path);
+		Objects.requireNonNull(charset);
+
+		Reader reader = new InputStreamReader(Files.newInputStream(path), charset.newDecoder());
+		return of(new BufferedReader(reader, BUFFER_SIZE));
+	}
+}
@@ -0,0 +1,30 @@
+package xivvic.console.action;
+
+/**
+ * CancellableAction is an action that is passed the token that cancels it.
+ *
+ * A long running action should check the token as it goes, and return, or
+ * throw {@link java.util.concurrent.CancellationException}, once it is
+ * cancelled.  See {@link CancellationToken}.
+ */
+public interface CancellableAction
+extends Action
+{
+	/**
+	 * The action method.
+	 *
+	 * @param param the action parameter
+	 * @param token cancels this invocation; never null
+	 */
+	public void invoke(Object param, CancellationToken token);
+
+	/**
+	 * Invokes the action with the token of the invocation running on this
+	 * thread, if there is one.
+	 */
+	@Override
+	public default void invoke(Object param)
+	{
+		invoke(param, CancellationToken.current());
+	}
+}
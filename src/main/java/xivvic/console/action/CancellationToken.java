@@ -0,0 +1,295 @@
+package xivvic.console.action;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CancellationToken asks one invocation of an action to stop.
+ *
+ * Cancellation is cooperative.  Cancelling a token interrupts the thread
+ * running the invocation, which ends blocking calls such as sleeps, waits and
+ * queue operations, and an action doing long work should check
+ * {@link #isCancelled()} or call {@link #throwIfCancelled()} as it goes.
+ *
+ * A token may have a deadline, after which it counts as cancelled.  The first
+ * check after the deadline cancels it; the menu manager's watchdog checks the
+ * tokens of running actions, so actions that never check are still
+ * interrupted.
+ *
+ * Code that must not be interrupted, such as a read of the console, holds
+ * interrupts back with {@link #holdInterrupts()}; a cancellation meanwhile
+ * interrupts the thread once they are released.
+ *
+ * The token of the invocation running on a thread is {@link #current()}, so
+ * any action can check it.  {@link CancellableAction}s are also passed it.
+ *
+ * @Threadsafe
+ */
+public final class CancellationToken
+{
+	/**
+	 * A token that is never cancelled.
+	 */
+	public static final CancellationToken NONE = new CancellationToken();
+
+	private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+	private final long timeout;
+	private final long deadline;
+
+	/**
+	 * Why the token was cancelled, or null while it has not been.
+	 */
+	private volatile String reason = null;
+	private volatile long   cancelledAt;
+
+	/**
+	 * The thread running the invocation, and how many holds on interrupts it
+	 * has.  Guarded by this.
+	 */
+	private Thread thread = null;
+	private int    holds  = 0;
+
+	/**
+	 * A token without a deadline.
+	 */
+	public CancellationToken()
+	{
+		this.timeout  = 0;
+		this.deadline = 0;
+	}
+
+	/**
+	 * A token cancelled once the timeout has passed, counting from now.
+	 *
+	 * @param timeout the time the invocation may take, greater than zero
+	 */
+	public CancellationToken(long timeout, TimeUnit unit)
+	{
+		if (timeout <= 0)
+		{
+			throw new IllegalArgumentException("Timeout must be greater than zero: " + timeout);
+		}
+
+		this.timeout  = unit.toNanos(timeout);
+		this.deadline = System.nanoTime() + this.timeout;
+	}
+
+	/**
+	 * @return the token of the invocation running on this thread, or {@link #NONE}
+	 */
+	public static CancellationToken current()
+	{
+		CancellationToken token = CURRENT.get();
+		return token == null ? NONE : token;
+	}
+
+	/**
+	 * @return true once the token has been cancelled, or its deadline has passed
+	 */
+	public boolean isCancelled()
+	{
+		if (reason != null)
+		{
+			return true;
+		}
+
+		if (timeout > 0 && System.nanoTime() - deadline >= 0)
+		{
+			cancel("deadline of [" + TimeUnit.NANOSECONDS.toMillis(timeout) + "] ms exceeded");
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @throws CancellationException if the token has been cancelled
+	 */
+	public void throwIfCancelled()
+	{
+		if (isCancelled())
+		{
+			throw new CancellationException(reason);
+		}
+	}
+
+	/**
+	 * @return why the token was cancelled, or null if it has not been.  Does not
+	 * check the deadline.
+	 */
+	public String reason()
+	{
+		return reason;
+	}
+
+	/**
+	 * @return when the token was cancelled, in {@link System#nanoTime()} terms.
+	 * Only meaningful once it has been.
+	 */
+	public long cancelledAt()
+	{
+		return cancelledAt;
+	}
+
+	/**
+	 * @return the time left until the deadline, never less than zero, or
+	 * Long.MAX_VALUE if the token has none
+	 */
+	public long remaining(TimeUnit unit)
+	{
+		if (timeout == 0)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		return unit.convert(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Cancels the token, and interrupts the thread running the invocation.
+	 * Nop on {@link #NONE}.
+	 *
+	 * @param why shown to the user
+	 * @return true if this call cancelled the token, false if it already was
+	 */
+	public boolean cancel(String why)
+	{
+		Objects.requireNonNull(why);
+
+		if (this == NONE)
+		{
+			return false;
+		}
+
+		synchronized (this)
+		{
+			if (reason != null)
+			{
+				return false;
+			}
+
+			cancelledAt = System.nanoTime();
+			reason      = why;
+
+			if (thread != null && holds == 0)
+			{
+				thread.interrupt();
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Holds back the interrupt a cancellation delivers, until
+	 * {@link #releaseInterrupts()}.  For calls the running thread must not be
+	 * interrupted in; holds nest.  An interrupt the token already delivered to
+	 * the calling thread is taken back, and delivered again on release.  Nop on
+	 * {@link #NONE}.
+	 *
+	 * @return this token, to release
+	 */
+	public CancellationToken holdInterrupts()
+	{
+		if (this != NONE)
+		{
+			synchronized (this)
+			{
+				if (holds++ == 0 && reason != null && thread == Thread.currentThread())
+				{
+					Thread.interrupted();
+				}
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Releases a hold.  Once no holds remain, a token cancelled meanwhile
+	 * interrupts the running thread.
+	 */
+	public void releaseInterrupts()
+	{
+		if (this == NONE)
+		{
+			return;
+		}
+
+		synchronized (this)
+		{
+			holds = Math.max(0, holds - 1);
+
+			if (holds == 0 && reason != null && thread != null)
+			{
+				thread.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return true while the running thread holds interrupts back, as when it
+	 * waits for the user
+	 */
+	public synchronized boolean isHoldingInterrupts()
+	{
+		return thread != null && holds > 0;
+	}
+
+	/**
+	 * Runs the body on the calling thread as the invocation this token cancels.
+	 * While it runs, the token is {@link #current()}.  An interrupt this token
+	 * delivers does not outlast the body.
+	 */
+	public void run(Runnable body)
+	{
+		CancellationToken outer = CURRENT.get();
+
+		synchronized (this)
+		{
+			thread = Thread.currentThread();
+			holds  = 0;
+
+			if (reason != null)
+			{
+				thread.interrupt();
+			}
+		}
+
+		CURRENT.set(this);
+
+		try
+		{
+			body.run();
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				thread = null;
+
+				if (reason != null)
+				{
+					Thread.interrupted();
+				}
+			}
+
+			if (outer == null)
+			{
+				CURRENT.remove();
+			}
+			else
+			{
+				CURRENT.set(outer);
+			}
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return reason == null ? "CancellationToken()" : "CancellationToken(" + reason + ")";
+	}
+}
@@ -0,0 +1,376 @@
+package xivvic.console.action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash array mapped trie keyed by case folded command text.
+ *
+ * Lookups accept any CharSequence and hash and compare it case-insensitively in place,
+ * so resolving a command does not allocate.  Keys are folded a character at a time
+ * with {@link Character#toLowerCase(char)}, which is locale independent.
+ *
+ * Adding entries returns a new table; the receiver is never modified, which lets
+ * readers use a table without locking once it has been safely published.  The new
+ * table shares every node of the old one except those on the path to each added
+ * entry, at most seven nodes of at most 32 slots, so adding a command costs the
+ * same however many the table holds.
+ *
+ * @param <V> type of the values held in the table
+ */
+final class CommandTable<V>
+{
+	private static final CommandTable<Object> EMPTY = new CommandTable<>(Node.EMPTY, 0);
+
+	/**
+	 * Hash bits used at each level of the trie.
+	 */
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	private final Node root;
+	private final int  size;
+
+	private CommandTable(Node root, int size)
+	{
+		this.root = root;
+		this.size = size;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <V> CommandTable<V> empty()
+	{
+		return (CommandTable<V>) EMPTY;
+	}
+
+	/**
+	 * Case folds text the same way lookups do.  Null is treated as the empty string.
+	 */
+	static String fold(CharSequence text)
+	{
+		if (text == null)
+		{
+			return "";
+		}
+
+		int length = text.length();
+		for (int i = 0; i < length; i++)
+		{
+			char c = text.charAt(i);
+			if (lower(c) != c)
+			{
+				char[] chars = new char[length];
+				for (int j = 0; j < length; j++)
+				{
+					chars[j] = lower(text.charAt(j));
+				}
+				return new String(chars);
+			}
+		}
+
+		return text.toString();
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the value bound to the key, ignoring case, or null if there is none.
+	 * A null key is treated as the empty string.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(CharSequence key)
+	{
+		if (key == null)
+		{
+			key = "";
+		}
+
+		int  hash = hash(key);
+		Node node = root;
+
+		for (int shift = 0; shift < Integer.SIZE; shift += BITS)
+		{
+			int bit = bit(hash, shift);
+
+			if ((node.bitmap & bit) == 0)
+			{
+				return null;
+			}
+
+			Object slot = node.slots[node.index(bit)];
+
+			if (slot instanceof Entry)
+			{
+				Entry e = (Entry) slot;
+				return e.hash == hash && matches(e.key, key) ? (V) e.value : null;
+			}
+
+			node = (Node) slot;
+		}
+
+		// Below the last level every entry has the same hash.
+		//
+		for (Object slot : node.slots)
+		{
+			Entry e = (Entry) slot;
+
+			if (matches(e.key, key))
+			{
+				return (V) e.value;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns a table holding the entries of this one plus the supplied keys,
+	 * each bound to the value.
+	 */
+	CommandTable<V> with(V value, String... added)
+	{
+		Node   next = root;
+		int[] count = { size };
+
+		for (String key : added)
+		{
+			next = put(next, 0, new Entry(fold(key), value), count);
+		}
+
+		return new CommandTable<>(next, count[0]);
+	}
+
+	/**
+	 * Returns a table holding the entries of this one plus the supplied ones,
+	 * added in iteration order.
+	 */
+	CommandTable<V> with(Map<String, ? extends V> added)
+	{
+		Node   next = root;
+		int[] count = { size };
+
+		for (Map.Entry<String, ? extends V> e : added.entrySet())
+		{
+			next = put(next, 0, new Entry(fold(e.getKey()), e.getValue()), count);
+		}
+
+		return new CommandTable<>(next, count[0]);
+	}
+
+	/**
+	 * Returns the keys in the table, sorted.
+	 */
+	String[] sortedKeys()
+	{
+		List<String> keys = new ArrayList<>(size);
+		forEach((k, v) -> keys.add(k));
+
+		String[] rv = keys.toArray(new String[keys.size()]);
+		Arrays.sort(rv);
+		return rv;
+	}
+
+	@SuppressWarnings("unchecked")
+	void forEach(BiConsumer<String, ? super V> consumer)
+	{
+		forEach(root, (BiConsumer<String, Object>) consumer);
+	}
+
+	private static void forEach(Node node, BiConsumer<String, Object> consumer)
+	{
+		for (Object slot : node.slots)
+		{
+			if (slot instanceof Entry)
+			{
+				Entry e = (Entry) slot;
+				consumer.accept(e.key, e.value);
+			}
+			else
+			{
+				forEach((Node) slot, consumer);
+			}
+		}
+	}
+
+	// Returns the node with the entry added, copying the path to it, or with
+	// the entry bound to the same key replaced.  Counts added keys.
+	//
+	private static Node put(Node node, int shift, Entry entry, int[] count)
+	{
+		if (shift >= Integer.SIZE)
+		{
+			for (int i = 0; i < node.slots.length; i++)
+			{
+				if (((Entry) node.slots[i]).key.equals(entry.key))
+				{
+					return new Node(0, replace(node.slots, i, entry));
+				}
+			}
+
+			count[0]++;
+			return new Node(0, insert(node.slots, node.slots.length, entry));
+		}
+
+		int bit = bit(entry.hash, shift);
+		int   i = node.index(bit);
+
+		if ((node.bitmap & bit) == 0)
+		{
+			count[0]++;
+			return new Node(node.bitmap | bit, insert(node.slots, i, entry));
+		}
+
+		Object slot = node.slots[i];
+
+		if (slot instanceof Node)
+		{
+			return new Node(node.bitmap, replace(node.slots, i, put((Node) slot, shift + BITS, entry, count)));
+		}
+
+		Entry present = (Entry) slot;
+
+		if (present.key.equals(entry.key))
+		{
+			return new Node(node.bitmap, replace(node.slots, i, entry));
+		}
+
+		count[0]++;
+		return new Node(node.bitmap, replace(node.slots, i, pair(present, entry, shift + BITS)));
+	}
+
+	// A node holding two entries whose hashes agree above the shift.
+	//
+	private static Node pair(Entry a, Entry b, int shift)
+	{
+		if (shift >= Integer.SIZE)
+		{
+			return new Node(0, new Object[] { a, b });
+		}
+
+		int ba = bit(a.hash, shift);
+		int bb = bit(b.hash, shift);
+
+		if (ba == bb)
+		{
+			return new Node(ba, new Object[] { pair(a, b, shift + BITS) });
+		}
+
+		Object[] slots = Integer.compareUnsigned(ba, bb) < 0 ? new Object[] { a, b } : new Object[] { b, a };
+		return new Node(ba | bb, slots);
+	}
+
+	private static Object[] insert(Object[] slots, int i, Object slot)
+	{
+		Object[] rv = new Object[slots.length + 1];
+
+		System.arraycopy(slots, 0, rv, 0, i);
+		System.arraycopy(slots, i, rv, i + 1, slots.length - i);
+		rv[i] = slot;
+
+		return rv;
+	}
+
+	private static Object[] replace(Object[] slots, int i, Object slot)
+	{
+		Object[] rv = slots.clone();
+		rv[i] = slot;
+		return rv;
+	}
+
+	private static int bit(int hash, int shift)
+	{
+		return 1 << ((hash >>> shift) & MASK);
+	}
+
+	private static int hash(CharSequence text)
+	{
+		int h = 0;
+		int length = text.length();
+
+		for (int i = 0; i < length; i++)
+		{
+			h = 31 * h + lower(text.charAt(i));
+		}
+
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean matches(String folded, CharSequence text)
+	{
+		int length = folded.length();
+		if (length != text.length())
+		{
+			return false;
+		}
+
+		for (int i = 0; i < length; i++)
+		{
+			if (folded.charAt(i) != lower(text.charAt(i)))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// Same as Character.toLowerCase(char), without the table lookup for ASCII.
+	//
+	private static char lower(char c)
+	{
+		if (c < 128)
+		{
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		}
+
+		return Character.toLowerCase(c);
+	}
+
+	/**
+	 * A folded key and its value.
+	 */
+	private static final class Entry
+	{
+		private final int    hash;
+		private final String key;
+		private final Object value;
+
+		private Entry(String key, Object value)
+		{
+			this.hash  = hash(key);
+			this.key   = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * One level of the trie.  Each slot holds an entry or the node for the next
+	 * level.  The bitmap has a bit set for each hash fragment present, and slots
+	 * are kept in bit order.  Below the last level, a node lists entries with the
+	 * same hash, and its bitmap is unused.
+	 */
+	private static final class Node
+	{
+		private static final Node EMPTY = new Node(0, new Object[0]);
+
+		private final int      bitmap;
+		private final Object[] slots;
+
+		private Node(int bitmap, Object[] slots)
+		{
+			this.bitmap = bitmap;
+			this.slots  = slots;
+		}
+
+		private int index(int bit)
+		{
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package xivvic.console.action;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds.
+ *
+ * Buckets are log-linear: each power of two is split into 16 equal buckets, so
+ * any recorded value is reported within about 6% of its true value, across the
+ * whole range of a long, in 960 counters.  Recording is an index computation
+ * and an atomic increment.
+ *
+ * Threads are spread over stripes of counters by thread id, so threads
+ * recording the same latency at once do not contend for one counter.  A
+ * stripe is only allocated when a thread first records into it, so an action
+ * only ever invoked from one thread costs one set of counters.
+ *
+ * @Threadsafe
+ * Readers may see a recording in progress, so a percentile read while actions
+ * run reflects some point during the read, not a single instant.
+ */
+final class LatencyHistogram
+{
+	private static final int SUB_BITS  = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS   = (64 - SUB_BITS) * SUB_COUNT;
+
+	private static final int STRIPES   = stripes(Runtime.getRuntime().availableProcessors());
+
+	private final AtomicReferenceArray<AtomicLongArray> counts = new AtomicReferenceArray<>(STRIPES);
+	private final AtomicLong                               max = new AtomicLong();
+
+	void record(long nanos)
+	{
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+
+		stripe().incrementAndGet(index(nanos));
+
+		long current = max.get();
+		while (nanos > current && ! max.compareAndSet(current, nanos))
+		{
+			current = max.get();
+		}
+	}
+
+	long max()
+	{
+		return max.get();
+	}
+
+	long count()
+	{
+		long total = 0;
+
+		for (long c : merge())
+		{
+			total += c;
+		}
+
+		return total;
+	}
+
+	/**
+	 * Returns the values at the requested quantiles, each between 0 and 1, in
+	 * one pass over the buckets.  A value is the upper edge of its bucket, capped
+	 * at the largest value recorded.
+	 *
+	 * @param quantiles ascending quantiles, for example 0.5, 0.99, 0.999
+	 * @return the values in nanoseconds, zero if nothing has been recorded
+	 */
+	long[] quantiles(double... quantiles)
+	{
+		long[] snapshot = merge();
+		long      total = 0;
+
+		for (long c : snapshot)
+		{
+			total += c;
+		}
+
+		long[] rv = new long[quantiles.length];
+		if (total == 0)
+		{
+			return rv;
+		}
+
+		long    top = max.get();
+		long   seen = 0;
+		int  bucket = 0;
+
+		for (int q = 0; q < quantiles.length; q++)
+		{
+			long rank = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+
+			while (bucket < BUCKETS - 1 && seen + snapshot[bucket] < rank)
+			{
+				seen += snapshot[bucket];
+				bucket++;
+			}
+
+			rv[q] = Math.min(upperEdge(bucket), top);
+		}
+
+		return rv;
+	}
+
+	void reset()
+	{
+		for (int s = 0; s < STRIPES; s++)
+		{
+			AtomicLongArray stripe = counts.get(s);
+			if (stripe == null)
+			{
+				continue;
+			}
+
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				stripe.set(i, 0);
+			}
+		}
+
+		max.set(0);
+	}
+
+	private AtomicLongArray stripe()
+	{
+		int                 s = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		AtomicLongArray stripe = counts.get(s);
+
+		if (stripe == null)
+		{
+			counts.compareAndSet(s, null, new AtomicLongArray(BUCKETS));
+			stripe = counts.get(s);
+		}
+
+		return stripe;
+	}
+
+	private long[] merge()
+	{
+		long[] rv = new long[BUCKETS];
+
+		for (int s = 0; s < STRIPES; s++)
+		{
+			AtomicLongArray stripe = counts.get(s);
+			if (stripe == null)
+			{
+				continue;
+			}
+
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				rv[i] += stripe.get(i);
+			}
+		}
+
+		return rv;
+	}
+
+	// Power of two, at least the number of processors, at most 16.
+	//
+	private static int stripes(int processors)
+	{
+		int n = 1;
+		while (n < processors && n < 16)
+		{
+			n <<= 1;
+		}
+
+		return n;
+	}
+
+	static int index(long value)
+	{
+		if (value < SUB_COUNT)
+		{
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int      sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+
+		return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+
+	// Largest value that falls in the bucket.
+	//
+	static long upperEdge(int index)
+	{
+		if (index < SUB_COUNT)
+		{
+			return index;
+		}
+
+		int exponent = index / SUB_COUNT + SUB_BITS - 1;
+		int      sub = index % SUB_COUNT;
+		int    shift = exponent - SUB_BITS;
+
+		if (exponent == 62 && sub == SUB_COUNT - 1)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+	}
+}
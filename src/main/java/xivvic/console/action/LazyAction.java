@@ -0,0 +1,194 @@
+package xivvic.console.action;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * LazyAction stands in for an action that is only built when it is first
+ * invoked.
+ *
+ * The name and description are known up front, so the placeholder can be
+ * registered and shown in menus without building the real action or anything
+ * it holds.  The first invocation calls the supplier, once, even if several
+ * threads invoke the action at the same time.  Enabling or disabling the
+ * placeholder before then is carried over to the real action.
+ *
+ * @Threadsafe
+ */
+public final class LazyAction
+implements Action
+{
+	private final String                     name;
+	private final String                     description;
+	private final Supplier<? extends Action> supplier;
+	private final boolean                    async;
+
+	private volatile Action  delegate;
+	private volatile boolean enabled = true;
+
+	public LazyAction(String name, String description, Supplier<? extends Action> supplier)
+	{
+		this(name, description, false, supplier);
+	}
+
+	/**
+	 * @param async whether the real action is async; see {@link Action#isAsync()}
+	 */
+	public LazyAction(String name, String description, boolean async, Supplier<? extends Action> supplier)
+	{
+		this.name        = Objects.requireNonNull(name);
+		this.description = description;
+		this.async       = async;
+		this.supplier    = Objects.requireNonNull(supplier);
+	}
+
+	@Override
+	public String name()
+	{
+		return name;
+	}
+
+	@Override
+	public String description()
+	{
+		return description;
+	}
+
+	@Override
+	public boolean isAsync()
+	{
+		return async;
+	}
+
+	/**
+	 * @return true once the real action has been built
+	 */
+	public boolean isCreated()
+	{
+		return delegate != null;
+	}
+
+	/**
+	 * Returns the real action, building it if this is the first call.
+	 *
+	 * @throws IllegalStateException if the supplier returns null
+	 */
+	public Action get()
+	{
+		Action action = delegate;
+
+		if (action == null)
+		{
+			synchronized (this)
+			{
+				action = delegate;
+
+				if (action == null)
+				{
+					action = supplier.get();
+
+					if (action == null)
+					{
+						throw new IllegalStateException("Supplier for action [" + name + "] returned null");
+					}
+
+					if (enabled)
+					{
+						action.enable();
+					}
+					else
+					{
+						action.disable();
+					}
+
+					delegate = action;
+				}
+			}
+		}
+
+		return action;
+	}
+
+	/**
+	 * Does nothing, without building the real action, while the placeholder is
+	 * disabled.
+	 */
+	@Override
+	public void invoke(Object param)
+	{
+		if (delegate == null && ! enabled)
+		{
+			return;
+		}
+
+		Action action = get();
+
+		// ActionBase records its own invocations.
+		//
+		if (action instanceof ActionBase)
+		{
+			action.invoke(param);
+			return;
+		}
+
+		long   start = ActionMetrics.start();
+		boolean fail = true;
+
+		try
+		{
+			action.invoke(param);
+			fail = false;
+		}
+		finally
+		{
+			ActionMetrics.record(name, start, fail);
+		}
+	}
+
+	@Override
+	public void enable()
+	{
+		setEnabled(true);
+	}
+
+	@Override
+	public void disable()
+	{
+		setEnabled(false);
+	}
+
+	@Override
+	public boolean is_enabled()
+	{
+		Action action = delegate;
+		return action == null ? enabled : action.is_enabled();
+	}
+
+	private synchronized void setEnabled(boolean on)
+	{
+		if (delegate != null)
+		{
+			if (on)
+			{
+				delegate.enable();
+			}
+			else
+			{
+				delegate.disable();
+			}
+			return;
+		}
+
+		if (enabled != on)
+		{
+			enabled = on;
+			ActionBase.stateChanged();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LazyAction(" + name + (isCreated() ? ", created" : "") + ")";
+	}
+}
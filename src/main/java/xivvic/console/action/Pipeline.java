@@ -0,0 +1,467 @@
+package xivvic.console.action;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipeline runs stream actions as the stages of a pipe, each reading the
+ * records the one before it writes.  See {@link StreamAction}.
+ *
+ * Every stage runs on a thread of its own, at the same time as the others.
+ * Records pass between two stages through a bounded queue, so a stage that
+ * gets ahead waits for the next one, and a pipeline holds at most a few
+ * thousand records however many flow through it.  The calling thread takes
+ * the records the last stage writes.
+ *
+ * A writer hands records over in chunks, filled while the reader still has
+ * some to read.  A reader that keeps up gets each record at once; one that
+ * falls behind takes many per wake up.  Chunks are handed back once read, so
+ * records flow without allocating.
+ *
+ * A stage that returns early closes its input, and the stages before it are
+ * stopped the next time they write.  A stage that fails stops every stage, and
+ * its failure is thrown by {@link #run(StreamAction.Output)}.  Each stage's
+ * invocation is recorded in {@link ActionMetrics}.
+ *
+ * A pipeline is enabled when all its stages are.
+ *
+ * @Threadsafe
+ * A pipeline can be run any number of times, by any number of threads.
+ */
+public final class Pipeline
+implements Action
+{
+	/**
+	 * The most records held between two stages, unless another is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The most records handed over at once.
+	 */
+	static final int CHUNK = 64;
+
+	/**
+	 * Threads are daemons, so a stage still running when the application exits
+	 * does not keep it alive.
+	 */
+	private static final ExecutorService STAGES = Executors.newCachedThreadPool(r ->
+	{
+		Thread t = new Thread(r, "pipe-stage");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final List<StreamAction> stages;
+	private final List<String>       params;
+	private final int                capacity;
+	private final String             name;
+
+	/**
+	 * @param stages the actions, in pipe order
+	 * @param params the parameter of each action
+	 */
+	public Pipeline(List<? extends StreamAction> stages, List<String> params)
+	{
+		this(stages, params, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param stages the actions, in pipe order
+	 * @param params the parameter of each action
+	 * @param capacity the most records held between two stages
+	 */
+	public Pipeline(List<? extends StreamAction> stages, List<String> params, int capacity)
+	{
+		if (stages.isEmpty() || stages.size() != params.size())
+		{
+			String msg = "Pipeline of [" + stages.size() + "] stages given [" + params.size() + "] parameters";
+			throw new IllegalArgumentException(msg);
+		}
+
+		this.stages   = new ArrayList<>(stages);
+		this.params   = new ArrayList<>(params);
+		this.capacity = Math.max(1, capacity);
+
+		StringBuilder sb = new StringBuilder();
+		for (StreamAction stage : this.stages)
+		{
+			sb.append(sb.length() == 0 ? "" : " | ").append(Objects.requireNonNull(stage).name());
+		}
+
+		this.name = sb.toString();
+	}
+
+	public int size()
+	{
+		return stages.size();
+	}
+
+	@Override
+	public String name()
+	{
+		return name;
+	}
+
+	@Override
+	public String description()
+	{
+		return "Pipeline of [" + stages.size() + "] commands";
+	}
+
+	/**
+	 * Runs the pipeline, printing each record the last stage writes on a line of
+	 * System.out.  The parameter is not used; each stage has its own.  Nop if a
+	 * stage is disabled.
+	 */
+	@Override
+	public void invoke(Object param)
+	{
+		if (! is_enabled())
+		{
+			return;
+		}
+
+		PrintStream out = System.out;
+
+		try
+		{
+			run(out::println);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs the pipeline and waits for it to complete.
+	 *
+	 * @param sink takes the records the last stage writes, on the calling thread
+	 * @throws InterruptedException if the calling thread is interrupted.  The stages are stopped.
+	 * @throws RuntimeException the first failure of a stage, or of the sink.  The stages are stopped.
+	 */
+	public void run(StreamAction.Output sink) throws InterruptedException
+	{
+		Objects.requireNonNull(sink);
+
+		int                              n = stages.size();
+		Pipe[]                       pipes = new Pipe[n];
+		List<Future<?>>            running = new ArrayList<>(n);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		// pipes[i] carries the records stage i writes.
+		//
+		for (int i = 0; i < n; i++)
+		{
+			pipes[i] = new Pipe(capacity);
+		}
+
+		try
+		{
+			for (int i = 0; i < n; i++)
+			{
+				StreamAction       action = stages.get(i);
+				String              param = params.get(i);
+				StreamAction.Input     in = i == 0 ? StreamAction.EMPTY : pipes[i - 1];
+				Pipe                  out = pipes[i];
+
+				running.add(STAGES.submit(() -> runStage(action, param, in, out, pipes, failure)));
+			}
+
+			Pipe   last = pipes[n - 1];
+			Object record;
+
+			try
+			{
+				while ((record = last.next()) != null)
+				{
+					sink.accept(record);
+				}
+			}
+			catch (Stopped e)
+			{
+				// A stage failed.
+				//
+			}
+			finally
+			{
+				last.close();
+			}
+		}
+		catch (InterruptedException | RuntimeException | Error e)
+		{
+			failure.compareAndSet(null, e);
+			abort(pipes);
+		}
+		finally
+		{
+			// Once the last stage has completed, nothing the others do is read.
+			//
+			for (Future<?> stage : running)
+			{
+				stage.cancel(true);
+			}
+		}
+
+		Throwable t = failure.get();
+
+		if (t instanceof InterruptedException)
+		{
+			throw (InterruptedException) t;
+		}
+		else if (t instanceof RuntimeException)
+		{
+			throw (RuntimeException) t;
+		}
+		else if (t instanceof Error)
+		{
+			throw (Error) t;
+		}
+	}
+
+	private static void runStage(StreamAction action, String param, StreamAction.Input in, Pipe out, Pipe[] pipes, AtomicReference<Throwable> failure)
+	{
+		long   start = ActionMetrics.start();
+		boolean fail = true;
+
+		try
+		{
+			action.process(param, in, out);
+			out.end();
+			fail = false;
+		}
+		catch (Stopped | InterruptedException e)
+		{
+			// The next stage wants no more, or the pipeline was stopped.
+			//
+			fail = false;
+		}
+		catch (RuntimeException | Error e)
+		{
+			if (failure.compareAndSet(null, e))
+			{
+				abort(pipes);
+			}
+		}
+		finally
+		{
+			if (in instanceof Pipe)
+			{
+				((Pipe) in).close();
+			}
+
+			ActionMetrics.record(action.name(), start, fail);
+		}
+	}
+
+	private static void abort(Pipe[] pipes)
+	{
+		for (Pipe pipe : pipes)
+		{
+			pipe.abort();
+		}
+	}
+
+	@Override
+	public void enable()
+	{
+		// Enabled through the stages.
+	}
+
+	@Override
+	public void disable()
+	{
+		// Enabled through the stages.
+	}
+
+	@Override
+	public boolean is_enabled()
+	{
+		for (StreamAction stage : stages)
+		{
+			if (! stage.is_enabled())
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder("Pipeline(");
+		for (int i = 0; i < stages.size(); i++)
+		{
+			String param = params.get(i);
+
+			sb.append(i == 0 ? "" : " | ").append(stages.get(i).name());
+			sb.append(param == null ? "" : " " + param);
+		}
+
+		return sb.append(")").toString();
+	}
+
+	/**
+	 * Thrown to a stage writing to a pipe nobody reads, or using a pipe of a
+	 * pipeline that has been stopped.  One instance, with no stack trace.
+	 */
+	private static final class Stopped
+	extends RuntimeException
+	{
+		private static final long    serialVersionUID = 1L;
+		private static final Stopped INSTANCE         = new Stopped();
+
+		private Stopped()
+		{
+			super("Pipe closed", null, false, false);
+		}
+	}
+
+	/**
+	 * The queue between a stage and the next.  One thread writes and one reads.
+	 *
+	 * The writer fills a chunk, and puts it on the queue when it is full or when
+	 * the queue is empty, in which case the reader may be waiting.  A chunk put
+	 * before it is full ends at its first null.  The reader clears each record
+	 * as it takes it, and hands the empty chunk back to be filled again.
+	 *
+	 * Closing the pipe, from the reading side, or aborting it empties the queue,
+	 * which wakes a writer waiting for room; its next write is refused.
+	 */
+	private static final class Pipe
+	implements StreamAction.Input, StreamAction.Output
+	{
+		private static final Object[] END = new Object[0];
+
+		private final BlockingQueue<Object[]> queue;
+		private final Queue<Object[]>         spare = new ConcurrentLinkedQueue<>();
+		private final int                     chunk;
+
+		private volatile boolean closed  = false;
+		private volatile boolean aborted = false;
+
+		// Writer only.
+		//
+		private Object[] filling;
+		private int      filled = 0;
+
+		// Reader only.
+		//
+		private Object[] reading = END;
+		private int      read    = 0;
+		private boolean  ended   = false;
+
+		private Pipe(int capacity)
+		{
+			this.chunk   = Math.min(CHUNK, capacity);
+			this.queue   = new LinkedBlockingQueue<>(Math.max(1, capacity / chunk));
+			this.filling = new Object[chunk];
+		}
+
+		@Override
+		public void accept(Object record) throws InterruptedException
+		{
+			Objects.requireNonNull(record);
+
+			if (closed || aborted)
+			{
+				throw Stopped.INSTANCE;
+			}
+
+			filling[filled++] = record;
+
+			if (filled == chunk || queue.isEmpty())
+			{
+				flush();
+			}
+		}
+
+		private void flush() throws InterruptedException
+		{
+			Object[] full = filling;
+			Object[] next = spare.poll();
+
+			filling = next == null ? new Object[chunk] : next;
+			filled  = 0;
+
+			queue.put(full);
+		}
+
+		// Called by the writer when it completes.
+		//
+		private void end() throws InterruptedException
+		{
+			if (closed || aborted)
+			{
+				return;
+			}
+
+			if (filled > 0)
+			{
+				flush();
+			}
+
+			queue.put(END);
+		}
+
+		@Override
+		public Object next() throws InterruptedException
+		{
+			while (read == reading.length || reading[read] == null)
+			{
+				if (ended)
+				{
+					return null;
+				}
+
+				if (reading != END)
+				{
+					spare.offer(reading);
+				}
+
+				reading = queue.take();
+				read    = 0;
+
+				if (aborted)
+				{
+					throw Stopped.INSTANCE;
+				}
+
+				ended = reading == END;
+			}
+
+			Object record = reading[read];
+			reading[read++] = null;
+
+			return record;
+		}
+
+		// Called by the reader when it completes.
+		//
+		private void close()
+		{
+			closed = true;
+			queue.clear();
+		}
+
+		private void abort()
+		{
+			aborted = true;
+			queue.clear();
+			queue.offer(END);
+		}
+	}
+}
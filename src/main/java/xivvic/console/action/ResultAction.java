@@ -0,0 +1,34 @@
+package xivvic.console.action;
+
+/**
+ * ResultAction is an action that returns its result instead of printing it.
+ *
+ * The menu manager hands the result to the handler of the cursor that ran
+ * the command, which renders it for a person at the console.  Cursors without
+ * a handler, as used by batch runs, discard results unread, so nothing is
+ * formatted, and rows of a lazy result are never produced.  A program can call
+ * {@link #result(Object)} itself and use the values.
+ *
+ * See {@link xivvic.console.menu.MenuCursor#results(java.util.function.Consumer)}.
+ */
+public interface ResultAction
+extends Action
+{
+	/**
+	 * Performs the action.
+	 *
+	 * @param param the action parameter
+	 * @return the result, which the caller closes; never null
+	 */
+	public ActionResult result(Object param);
+
+	/**
+	 * Performs the action and discards the result.  Result actions extending
+	 * {@link ActionBase} do the same in {@link ActionBase#internal_invoke(Object)}.
+	 */
+	@Override
+	public default void invoke(Object param)
+	{
+		result(param).close();
+	}
+}
@@ -0,0 +1,92 @@
+package xivvic.console.action;
+
+/**
+ * StreamAction is an action that reads a stream of records and writes another.
+ *
+ * Commands joined by {@code |} run as a {@link Pipeline}: each stage reads the
+ * records the stage before it writes, and all the stages run at the same time.
+ * The first stage reads nothing; the records the last stage writes are printed.
+ *
+ * Records are any non-null objects the stages agree on.  A stage should read
+ * and write one record at a time rather than collect them, so that a pipeline
+ * of any length runs in constant memory.
+ *
+ * A stream action invoked on its own, outside a pipeline, reads nothing and
+ * has its records printed, one per line.
+ */
+public interface StreamAction
+extends Action
+{
+	/**
+	 * Input with no records.
+	 */
+	public static final Input EMPTY = () -> null;
+
+	/**
+	 * Reads the input and writes the output.  The action may return before its
+	 * input is exhausted; the stages before it are then stopped.
+	 *
+	 * @param param the action parameter
+	 * @param in the records written by the previous stage
+	 * @param out where records for the next stage are written
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * to read or write
+	 */
+	public void process(Object param, Input in, Output out) throws InterruptedException;
+
+	@Override
+	public default void invoke(Object param)
+	{
+		invokeAlone(this, param);
+	}
+
+	/**
+	 * Runs the action with no input, printing each record it writes on a line of
+	 * System.out.  Stream actions extending {@link ActionBase} call this from
+	 * {@link ActionBase#internal_invoke(Object)}.
+	 */
+	public static void invokeAlone(StreamAction action, Object param)
+	{
+		try
+		{
+			action.process(param, EMPTY, System.out::println);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The records a stage reads.
+	 */
+	@FunctionalInterface
+	public interface Input
+	{
+		/**
+		 * Returns the next record, waiting for the previous stage to write it.
+		 *
+		 * @return the record, or null once the previous stage has completed and
+		 * every record it wrote has been read
+		 */
+		public Object next() throws InterruptedException;
+	}
+
+	/**
+	 * Where a stage writes its records.
+	 */
+	@FunctionalInterface
+	public interface Output
+	{
+		/**
+		 * Writes a record, waiting while the next stage is too far behind.
+		 *
+		 * An unchecked exception is thrown once the next stage wants no more
+		 * records, or the pipeline has been stopped.  Let it propagate: the stage
+		 * is then treated as having completed.
+		 *
+		 * @param record the record, not null
+		 */
+		public void accept(Object record) throws InterruptedException;
+	}
+}
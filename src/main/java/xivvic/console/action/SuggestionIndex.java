@@ -0,0 +1,375 @@
+package xivvic.console.action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds the command names closest to a misspelled one, by Levenshtein
+ * distance, ignoring case.
+ *
+ * The names are kept in a trie.  A search walks it depth first, carrying one
+ * row of the edit distance table per level, so names sharing a prefix share
+ * the work for it.  Only the diagonal band of each row that can be within the
+ * limit is computed, and a branch is abandoned once its band is over the
+ * limit, or when no name below it has a length within the limit of the
+ * query's.
+ *
+ * Near the root almost every branch is within the limit, so on its own that
+ * search visits a large part of the trie.  Instead, the query is split in
+ * half: a name within k edits of the query is within k/2 edits of it on one
+ * half or the other.  One walk requires that of the first half, the other
+ * walks a second trie of the reversed names with the reversed query, and
+ * both can prune hard from the first letter on.
+ *
+ * Names are added one at a time as they are registered; nothing is rebuilt.
+ *
+ * @Threadsafe
+ * Searches never lock and may run while a name is added; they see the name or
+ * not.  Adds must be serialized by the caller.
+ */
+final class SuggestionIndex
+{
+	static final Comparator<Suggestion> CLOSEST = Comparator
+			.comparingInt((Suggestion s) -> s.distance)
+			.thenComparing(s -> s.name, String.CASE_INSENSITIVE_ORDER);
+
+	private static final Node[] LEAF = new Node[0];
+
+	private final Node forward  = new Node('\0');
+	private final Node backward = new Node('\0');
+
+	/**
+	 * Adds a name.  Names equal, ignoring case, to one already present are
+	 * ignored.
+	 *
+	 * @return true if the name was added
+	 */
+	boolean add(String name)
+	{
+		char[] folded = fold(name);
+
+		if (! add(forward, folded, name))
+		{
+			return false;
+		}
+
+		add(backward, reverse(folded), name);
+		return true;
+	}
+
+	/**
+	 * @param query the misspelled name
+	 * @param maxDistance the most edits a suggestion may be from the query
+	 * @return the names within the distance, closest first, then alphabetically
+	 */
+	List<Suggestion> near(CharSequence query, int maxDistance)
+	{
+		if (query == null || maxDistance < 0)
+		{
+			return Collections.emptyList();
+		}
+
+		char[]          folded = fold(query);
+		int               half = folded.length / 2;
+		List<Suggestion> found = new ArrayList<>();
+
+		new Search(folded, half, maxDistance, found).run(forward);
+		new Search(reverse(folded), folded.length - half, maxDistance, found).run(backward);
+
+		// Names close on both halves are found twice.
+		//
+		found.sort(CLOSEST);
+
+		List<Suggestion> rv = new ArrayList<>(found.size());
+		for (Suggestion s : found)
+		{
+			if (rv.isEmpty() || ! rv.get(rv.size() - 1).name.equals(s.name))
+			{
+				rv.add(s);
+			}
+		}
+
+		return rv;
+	}
+
+	private static boolean add(Node root, char[] folded, String name)
+	{
+		int length = folded.length;
+		Node  node = root;
+
+		for (int i = 0; i < length; i++)
+		{
+			// Widen the lengths before the name can be reached, so a search that
+			// finds the name never skips it on length.
+			//
+			node.widen(length);
+			node = node.child(folded[i]);
+		}
+
+		if (node.name != null)
+		{
+			return false;
+		}
+
+		node.widen(length);
+		node.name = name;
+		return true;
+	}
+
+	private static char[] fold(CharSequence name)
+	{
+		return name.toString().toLowerCase(Locale.ROOT).toCharArray();
+	}
+
+	private static char[] reverse(char[] chars)
+	{
+		char[] rv = new char[chars.length];
+		for (int i = 0; i < chars.length; i++)
+		{
+			rv[i] = chars[chars.length - 1 - i];
+		}
+
+		return rv;
+	}
+
+	/**
+	 * A name and its distance from the query.
+	 */
+	static final class Suggestion
+	{
+		final String name;
+		final int    distance;
+
+		Suggestion(String name, int distance)
+		{
+			this.name     = name;
+			this.distance = distance;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + "(" + distance + ")";
+		}
+	}
+
+	private static final class Node
+	{
+		private final char label;
+
+		/**
+		 * Children sorted by label.  Replaced, never modified, so a search sees a
+		 * whole array.
+		 */
+		private volatile Node[] children = LEAF;
+
+		/**
+		 * The name ending here, if any, as it was registered.
+		 */
+		private volatile String name;
+
+		/**
+		 * Shortest and longest name at or below this node.
+		 */
+		private volatile int minLength = Integer.MAX_VALUE;
+		private volatile int maxLength = -1;
+
+		private Node(char label)
+		{
+			this.label = label;
+		}
+
+		// Writers only.
+		//
+		private void widen(int length)
+		{
+			if (length < minLength)
+			{
+				minLength = length;
+			}
+
+			if (length > maxLength)
+			{
+				maxLength = length;
+			}
+		}
+
+		// Writers only.
+		//
+		private Node child(char c)
+		{
+			Node[] current = children;
+
+			int lo = 0;
+			int hi = current.length - 1;
+
+			while (lo <= hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				char  m = current[mid].label;
+
+				if (m < c)
+				{
+					lo = mid + 1;
+				}
+				else if (m > c)
+				{
+					hi = mid - 1;
+				}
+				else
+				{
+					return current[mid];
+				}
+			}
+
+			Node[] next = new Node[current.length + 1];
+			System.arraycopy(current, 0, next, 0, lo);
+			System.arraycopy(current, lo, next, lo + 1, current.length - lo);
+
+			Node added = new Node(c);
+			next[lo]   = added;
+			children   = next;
+
+			return added;
+		}
+	}
+
+	/**
+	 * One walk of a trie: the query, and a row of the distance table for each
+	 * level reached so far.
+	 *
+	 * Entries are capped at one over the limit.  Row i only holds valid entries
+	 * from i - limit - 1 to i + limit + 1, the most the next row reads.
+	 *
+	 * Until the path has matched the first {@code head} characters of the query
+	 * within half the limit, a branch is only followed if it still can, so the
+	 * walk finds the names close on that part of the query.
+	 */
+	private static final class Search
+	{
+		private final char[]           query;
+		private final int              head;
+		private final int              limit;
+		private final int              headLimit;
+		private final List<Suggestion> found;
+
+		private int[][] rows = new int[16][];
+
+		private Search(char[] query, int head, int limit, List<Suggestion> found)
+		{
+			this.query     = query;
+			this.head      = head;
+			this.limit     = limit;
+			this.headLimit = limit / 2;
+			this.found     = found;
+		}
+
+		private void run(Node root)
+		{
+			int[] row = row(0);
+			for (int j = 0; j < row.length; j++)
+			{
+				row[j] = Math.min(j, limit + 1);
+			}
+
+			visit(root, 0, row[head] <= headLimit);
+		}
+
+		private int[] row(int depth)
+		{
+			if (depth >= rows.length)
+			{
+				rows = Arrays.copyOf(rows, rows.length * 2);
+			}
+
+			int[] row = rows[depth];
+			if (row == null)
+			{
+				row = new int[query.length + 1];
+				rows[depth] = row;
+			}
+
+			return row;
+		}
+
+		// The row for the node's own prefix has already been filled in.
+		//
+		private void visit(Node node, int depth, boolean anchored)
+		{
+			int[]    prev = rows[depth];
+			String   name = node.name;
+			int         m = query.length;
+			int      over = limit + 1;
+
+			if (name != null && Math.abs(m - depth) <= limit && prev[m] <= limit)
+			{
+				found.add(new Suggestion(name, prev[m]));
+			}
+
+			int lo = Math.max(1, depth + 1 - limit);
+			int hi = Math.min(m, depth + 1 + limit);
+
+			// Every entry of the next row would be over the limit.
+			//
+			if (lo - 1 > m)
+			{
+				return;
+			}
+
+			for (Node child : node.children)
+			{
+				if (child.minLength > m + limit || child.maxLength < m - limit)
+				{
+					continue;
+				}
+
+				int[]     curr = row(depth + 1);
+				char         c = child.label;
+				int      first = lo == 1 ? Math.min(depth + 1, over) : over;
+				int       best = first;
+				int   bestHead = lo - 1 <= head ? first : over;
+
+				curr[lo - 1] = first;
+
+				for (int j = lo; j <= hi; j++)
+				{
+					int cost = c == query[j - 1] ? 0 : 1;
+					int    v = Math.min(Math.min(curr[j - 1], prev[j]) + 1, prev[j - 1] + cost);
+
+					curr[j] = Math.min(v, over);
+					best    = Math.min(best, v);
+
+					if (j <= head)
+					{
+						bestHead = Math.min(bestHead, v);
+					}
+				}
+
+				if (hi < m)
+				{
+					curr[hi + 1] = over;
+				}
+
+				if (best > limit)
+				{
+					continue;
+				}
+
+				// No later row does better on the head than the best of this one.
+				//
+				if (anchored)
+				{
+					visit(child, depth + 1, true);
+				}
+				else if (bestHead <= headLimit)
+				{
+					visit(child, depth + 1, head >= lo - 1 && head <= hi && curr[head] <= headLimit);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,467 @@
+package xivvic.console.interact;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * InformUser implementation that hands messages to a writer thread, so that
+ * sending a message never waits for the console or any other sink.
+ *
+ * Each channel has a bounded, lock-free queue ({@link MessageRing}) that any
+ * thread may send to.  A single writer thread drains the queues in batches and
+ * passes the messages on to the sinks, flushing any sink that is
+ * {@link Flushable} once per batch rather than once per message.  For best
+ * throughput give it a sink that does not flush on every line, for example a
+ * {@link ConsoleInformUser} over a PrintStream without autoflush.
+ *
+ * When a channel's queue is full, its {@link Backpressure} policy decides
+ * what happens.  By default STATUS messages are coalesced by topic and the
+ * other channels block, so a worker reporting progress in a tight loop cannot
+ * stall the menu loop, and errors are never lost.
+ *
+ * Messages on one channel are delivered in the order they were sent, except
+ * that coalesced messages are delivered in no particular order.  There is no
+ * ordering between channels.
+ *
+ * @Threadsafe
+ */
+public class AsyncInformUser
+implements InformUser, Closeable
+{
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private static final int  BATCH     = 256;
+	private static final long IDLE_PARK = 10000000;  // 10 ms
+
+	private final List<InformUser>          sinks;
+	private final Map<MessageChannel, Lane> lanes = new EnumMap<>(MessageChannel.class);
+	private final Lane                      tables;
+	private final Thread                    writer;
+
+	private volatile boolean closed = false;
+	private volatile boolean idle   = false;
+
+	/**
+	 * Creates a writer with the default capacity and policies.
+	 */
+	public AsyncInformUser(InformUser... sinks)
+	{
+		this(DEFAULT_CAPACITY, new EnumMap<>(MessageChannel.class), sinks);
+	}
+
+	/**
+	 * @param capacity the number of messages each channel can queue
+	 * @param policies the policy of each channel; channels left out get the default
+	 * @param sinks where messages are delivered, in order
+	 */
+	public AsyncInformUser(int capacity, Map<MessageChannel, Backpressure> policies, InformUser... sinks)
+	{
+		Objects.requireNonNull(policies);
+
+		if (sinks.length == 0)
+		{
+			throw new IllegalArgumentException("At least one sink is required");
+		}
+
+		this.sinks = Arrays.asList(sinks.clone());
+
+		for (MessageChannel channel : MessageChannel.values())
+		{
+			Backpressure policy = policies.getOrDefault(channel, defaultPolicy(channel));
+			lanes.put(channel, new Lane(policy, capacity));
+		}
+
+		tables = new Lane(Backpressure.BLOCK, capacity);
+		writer = new Thread(this::write, "inform-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public static Backpressure defaultPolicy(MessageChannel channel)
+	{
+		return channel == MessageChannel.STATUS ? Backpressure.COALESCE : Backpressure.BLOCK;
+	}
+
+	public Backpressure policy(MessageChannel channel)
+	{
+		return lanes.get(channel).policy;
+	}
+
+	/**
+	 * @return the number of messages on the channel that were dropped or
+	 * replaced by a later message, and so never delivered
+	 */
+	public long dropped(MessageChannel channel)
+	{
+		return lanes.get(channel).dropped.sum();
+	}
+
+	@Override
+	public void displayTable(String id, String[] content)
+	{
+		// The caller may reuse the array once this returns.
+		//
+		String[] copy = content == null ? null : content.clone();
+
+		send(tables, new Message(null, id, null, copy, null, true));
+	}
+
+	/**
+	 * Queues the table.  Its rows are read later, on the writer thread, so the
+	 * caller must not use the iterator once this returns.
+	 */
+	@Override
+	public void displayTable(String id, String[] header, Iterator<String[]> rows)
+	{
+		Objects.requireNonNull(rows);
+
+		String[] copy = header == null ? null : header.clone();
+
+		send(tables, new Message(null, id, null, copy, rows, true));
+	}
+
+	@Override
+	public void userMessage(MessageChannel channel, String topic, String msg)
+	{
+		channel = channel == null ? MessageChannel.STATUS : channel;
+
+		send(lanes.get(channel), new Message(channel, topic, msg, null, null, false));
+	}
+
+	/**
+	 * Delivers every queued message, then stops the writer thread.  Messages sent
+	 * after this returns, or queued while the writer was stopping, are delivered
+	 * on the sender's thread.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		LockSupport.unpark(writer);
+
+		try
+		{
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void send(Lane lane, Message message)
+	{
+		// A sink that reports through this object, and senders after close,
+		// cannot wait for the writer.
+		//
+		if (closed || Thread.currentThread() == writer)
+		{
+			deliver(message);
+			return;
+		}
+
+		switch (lane.policy)
+		{
+		case BLOCK:
+			block(lane, message);
+			break;
+		case DROP_OLDEST:
+			dropOldest(lane, message);
+			break;
+		case COALESCE:
+			coalesce(lane, message);
+			break;
+		}
+
+		if (idle)
+		{
+			LockSupport.unpark(writer);
+		}
+
+		// The writer may have made its last drain before the message was queued.
+		//
+		if (closed)
+		{
+			drainAfterClose();
+		}
+	}
+
+	// Waits for the writer to stop, then delivers what it left behind.  Senders
+	// take turns, so each drain sees the lanes in order.
+	//
+	private void drainAfterClose()
+	{
+		boolean interrupted = false;
+
+		while (writer.isAlive())
+		{
+			try
+			{
+				writer.join();
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+
+		synchronized (lanes)
+		{
+			while (drain() > 0)
+			{
+			}
+		}
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void block(Lane lane, Message message)
+	{
+		int spins = 0;
+
+		while (! lane.ring.offer(message))
+		{
+			LockSupport.unpark(writer);
+
+			if (closed)
+			{
+				deliver(message);
+				return;
+			}
+
+			if (++spins < 64)
+			{
+				Thread.yield();
+			}
+			else
+			{
+				LockSupport.parkNanos(this, 50000);
+			}
+		}
+	}
+
+	private void dropOldest(Lane lane, Message message)
+	{
+		while (! lane.ring.offer(message))
+		{
+			if (lane.ring.poll() != null)
+			{
+				lane.dropped.increment();
+			}
+		}
+	}
+
+	private void coalesce(Lane lane, Message message)
+	{
+		String topic = message.topic == null ? "" : message.topic;
+
+		// Keep at most a queue's worth of topics.  An unseen topic beyond that
+		// is dropped rather than letting the map grow without bound.
+		//
+		if (lane.latest.size() >= lane.ring.capacity() && ! lane.latest.containsKey(topic))
+		{
+			lane.dropped.increment();
+			return;
+		}
+
+		if (lane.latest.put(topic, message) != null)
+		{
+			lane.dropped.increment();
+		}
+	}
+
+	private void write()
+	{
+		while (true)
+		{
+			if (drain() > 0)
+			{
+				continue;
+			}
+
+			if (closed)
+			{
+				// Deliver what was sent while closing.
+				//
+				while (drain() > 0)
+				{
+				}
+				return;
+			}
+
+			idle = true;
+
+			if (! hasPending())
+			{
+				LockSupport.parkNanos(this, IDLE_PARK);
+			}
+
+			idle = false;
+		}
+	}
+
+	// Delivers up to a batch from each lane, then flushes.
+	//
+	private int drain()
+	{
+		int count = drain(tables);
+
+		for (Lane lane : lanes.values())
+		{
+			count += drain(lane);
+		}
+
+		if (count > 0)
+		{
+			flushSinks();
+		}
+
+		return count;
+	}
+
+	private int drain(Lane lane)
+	{
+		int count = 0;
+
+		if (lane.policy == Backpressure.COALESCE)
+		{
+			Iterator<String> it = lane.latest.keySet().iterator();
+			while (count < BATCH && it.hasNext())
+			{
+				Message message = lane.latest.remove(it.next());
+				if (message != null)
+				{
+					deliver(message);
+					count++;
+				}
+			}
+
+			return count;
+		}
+
+		Message message;
+		while (count < BATCH && (message = lane.ring.poll()) != null)
+		{
+			deliver(message);
+			count++;
+		}
+
+		return count;
+	}
+
+	private boolean hasPending()
+	{
+		if (! tables.ring.isEmpty())
+		{
+			return true;
+		}
+
+		for (Lane lane : lanes.values())
+		{
+			if (! lane.ring.isEmpty() || ! lane.latest.isEmpty())
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// A failing sink must not stop delivery to the others, or kill the writer.
+	//
+	private void deliver(Message message)
+	{
+		for (InformUser sink : sinks)
+		{
+			try
+			{
+				if (message.rows != null)
+				{
+					sink.displayTable(message.topic, message.table, message.rows);
+				}
+				else if (message.isTable)
+				{
+					sink.displayTable(message.topic, message.table);
+				}
+				else
+				{
+					sink.userMessage(message.channel, message.topic, message.text);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				// Nowhere left to report it.
+				//
+			}
+		}
+	}
+
+	private void flushSinks()
+	{
+		for (InformUser sink : sinks)
+		{
+			if (sink instanceof Flushable)
+			{
+				try
+				{
+					((Flushable) sink).flush();
+				}
+				catch (IOException | RuntimeException e)
+				{
+					// As above.
+					//
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queue and policy of one channel.
+	 */
+	private static final class Lane
+	{
+		private final Backpressure                       policy;
+		private final MessageRing<Message>               ring;
+		private final ConcurrentHashMap<String, Message> latest  = new ConcurrentHashMap<>();
+		private final LongAdder                          dropped = new LongAdder();
+
+		private Lane(Backpressure policy, int capacity)
+		{
+			this.policy = Objects.requireNonNull(policy);
+			this.ring   = new MessageRing<>(capacity);
+		}
+	}
+
+	private static final class Message
+	{
+		private final MessageChannel     channel;
+		private final String             topic;
+		private final String             text;
+		private final String[]           table;
+		private final Iterator<String[]> rows;
+		private final boolean            isTable;
+
+		private Message(MessageChannel channel, String topic, String text, String[] table, Iterator<String[]> rows, boolean isTable)
+		{
+			this.channel = channel;
+			this.topic   = topic;
+			this.text    = text;
+			this.table   = table;
+			this.rows    = rows;
+			this.isTable = isTable;
+		}
+	}
+}
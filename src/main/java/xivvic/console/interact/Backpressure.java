@@ -0,0 +1,28 @@
+package xivvic.console.interact;
+
+/**
+ * What {@link AsyncInformUser} does with a message when its channel cannot
+ * take any more.
+ */
+public enum Backpressure
+{
+	/**
+	 * The sender waits until the writer makes room.  Nothing is lost, but a
+	 * sender can be slowed to the speed of the slowest sink.
+	 */
+	BLOCK,
+
+	/**
+	 * The oldest queued message on the channel is discarded to make room.  The
+	 * sender never waits.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Only the latest message for each topic is kept until the writer gets to
+	 * it; earlier ones are replaced.  The sender never waits.  Suits progress and
+	 * status messages, where only the current value matters.
+	 */
+	COALESCE,
+	;
+}
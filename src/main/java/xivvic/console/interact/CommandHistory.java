@@ -0,0 +1,569 @@
+package xivvic.console.interact;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CommandHistory keeps the lines a user has entered in a file that outlives
+ * the application, and recalls them by number or by search.
+ *
+ * The file is mapped into memory and holds two fixed size rings after a 64
+ * byte header.  The data ring holds the lines, each as its length followed by
+ * its bytes in UTF-8.  The index ring holds where each line starts, one slot
+ * per line, so line n is found without reading any other.  Once either ring
+ * is full, each new line overwrites the oldest ones.  The header holds the
+ * positions of the oldest and next lines and the number of the oldest.
+ *
+ * Appending copies the line into the mapping, which does not wait for the
+ * disk.  A background thread writes changed pages out once a second, and on
+ * close.  Opening the file reads only the header: the index is already on
+ * disk, so a history of millions of lines opens in a few milliseconds.  Lines
+ * are decoded only when recalled.
+ *
+ * Lines are numbered from 1 in the order they were added, across restarts.
+ *
+ * @Threadsafe
+ * One history can be shared by the sessions of a server.
+ */
+public class CommandHistory
+implements Closeable
+{
+	public static final int DEFAULT_CAPACITY = 16 << 20;
+	public static final int MAX_LINE_BYTES   = 1 << 16;
+
+	private static final int  MAGIC          = 0x43484953;  // "CHIS"
+	private static final int  VERSION        = 1;
+	private static final int  HEADER         = 64;
+	private static final int  WRAP           = -1;
+	private static final long FLUSH_INTERVAL = 1000000000;  // 1 s
+
+	// Header fields.
+	//
+	private static final int AT_MAGIC    = 0;
+	private static final int AT_VERSION  = 4;
+	private static final int AT_CAPACITY = 8;
+	private static final int AT_TAIL     = 12;
+	private static final int AT_HEAD     = 16;
+	private static final int AT_COUNT    = 20;
+	private static final int AT_FIRST    = 24;
+	private static final int AT_SLOTS    = 32;
+
+	/**
+	 * Data bytes per index slot: room for a line of four bytes, on average.
+	 */
+	private static final int BYTES_PER_SLOT = 8;
+
+	private final FileChannel      channel;
+	private final MappedByteBuffer map;
+	private final int              capacity;
+	private final int              slots;
+	private final int              data;
+	private final Thread           flusher;
+
+	// Guarded by this.
+	//
+	private int  tail;
+	private int  head;
+	private int  count;
+	private long first = 1;
+
+	private volatile boolean dirty  = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * Opens the history in the file, creating it with the default capacity if
+	 * it does not exist.
+	 */
+	public CommandHistory(Path file)
+	throws IOException
+	{
+		this(file, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Opens the history in the file, creating it if it does not exist.
+	 *
+	 * @param file the history file
+	 * @param capacity the bytes available for lines in a new file, which also
+	 * has an index of half that size.  An existing file keeps the capacity it
+	 * was created with.
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public CommandHistory(Path file, int capacity)
+	throws IOException
+	{
+		Objects.requireNonNull(file);
+
+		if (capacity < 1024)
+		{
+			throw new IllegalArgumentException("History capacity must be at least 1024 bytes: " + capacity);
+		}
+
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try
+		{
+			long size     = channel.size();
+			boolean fresh = size < HEADER;
+
+			if (! fresh)
+			{
+				MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER);
+				fresh = header.getInt(AT_MAGIC) != MAGIC || header.getInt(AT_VERSION) != VERSION;
+
+				if (! fresh)
+				{
+					capacity = header.getInt(AT_CAPACITY);
+					fresh    = capacity < 1024 || size < fileLength(capacity);
+				}
+			}
+
+			if (fileLength(capacity) > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("History capacity too large: " + capacity);
+			}
+
+			this.capacity = capacity;
+			this.slots    = capacity / BYTES_PER_SLOT;
+			this.data     = HEADER + slots * Integer.BYTES;
+			this.map      = channel.map(MapMode.READ_WRITE, 0, fileLength(capacity));
+
+			if (fresh)
+			{
+				map.putInt(AT_MAGIC,    MAGIC);
+				map.putInt(AT_VERSION,  VERSION);
+				map.putInt(AT_CAPACITY, capacity);
+				map.putInt(AT_SLOTS,    slots);
+				writeHeader();
+			}
+			else
+			{
+				load();
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+
+		flusher = new Thread(this::flushLoop, "history-flush");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Adds a line, overwriting the oldest lines if there is no room.  Blank
+	 * lines, and lines longer than {@link #MAX_LINE_BYTES} in UTF-8, are not
+	 * kept.
+	 *
+	 * @return the number of the line, or -1 if it was not kept
+	 */
+	public long append(CharSequence line)
+	{
+		if (line == null || line.toString().trim().isEmpty())
+		{
+			return -1;
+		}
+
+		byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+
+		if (bytes.length > MAX_LINE_BYTES || Integer.BYTES + bytes.length > capacity)
+		{
+			return -1;
+		}
+
+		synchronized (this)
+		{
+			if (closed)
+			{
+				return -1;
+			}
+
+			if (count == slots)
+			{
+				evict();
+			}
+
+			int       at = reserve(Integer.BYTES + bytes.length);
+			long  number = first + count;
+
+			ByteBuffer record = map.duplicate();
+			record.position(data + at);
+			record.putInt(bytes.length);
+			record.put(bytes);
+
+			map.putInt(slot(number), at);
+
+			head = at + Integer.BYTES + bytes.length;
+			count++;
+			writeHeader();
+
+			dirty = true;
+			return number;
+		}
+	}
+
+	/**
+	 * @return the line with the number, or null if there is none or it has been overwritten
+	 */
+	public synchronized String get(long number)
+	{
+		if (number < first || number >= first + count)
+		{
+			return null;
+		}
+
+		return decode(map.getInt(slot(number)));
+	}
+
+	/**
+	 * @return the number of the oldest line kept, or the number the next line
+	 * will get if there are none
+	 */
+	public synchronized long first()
+	{
+		return first;
+	}
+
+	/**
+	 * @return the number of the newest line, or one less than {@link #first()}
+	 * if there are none
+	 */
+	public synchronized long last()
+	{
+		return first + count - 1;
+	}
+
+	public synchronized int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Finds the newest line before a given one that contains the text.  Call
+	 * again with the number found to find the next older match, as a reverse
+	 * incremental search does.
+	 *
+	 * @param text the text to find; case matters
+	 * @param before only lines with a lower number are searched
+	 * @return the number of the line, or -1 if no line matches
+	 */
+	public synchronized long search(String text, long before)
+	{
+		return find(text.getBytes(StandardCharsets.UTF_8), before, false);
+	}
+
+	/**
+	 * Expands a history reference, as a shell does:
+	 *
+	 * !!      -- the last line
+	 * !n      -- line n
+	 * !-n     -- the nth line back
+	 * !?text  -- the newest line containing text; a closing '?' is optional
+	 * !text   -- the newest line starting with text
+	 *
+	 * @return the input unchanged if it is not a reference, the line it refers
+	 * to, or null if there is no such line
+	 */
+	public String expand(String input)
+	{
+		if (input == null || input.length() < 2 || input.charAt(0) != '!')
+		{
+			return input;
+		}
+
+		String ref = input.substring(1).trim();
+
+		if (ref.equals("!"))
+		{
+			return get(last());
+		}
+
+		if (ref.startsWith("?"))
+		{
+			String text = ref.endsWith("?") && ref.length() > 1 ? ref.substring(1, ref.length() - 1) : ref.substring(1);
+			long      n = search(text, Long.MAX_VALUE);
+			return n < 0 ? null : get(n);
+		}
+
+		if (isNumber(ref))
+		{
+			long n = Long.parseLong(ref);
+			return n < 0 ? get(last() + 1 + n) : get(n);
+		}
+
+		synchronized (this)
+		{
+			long n = find(ref.getBytes(StandardCharsets.UTF_8), Long.MAX_VALUE, true);
+			return n < 0 ? null : get(n);
+		}
+	}
+
+	/**
+	 * Writes out the lines appended so far, stops the background thread and
+	 * closes the file.  Lines appended after this are not kept.
+	 */
+	@Override
+	public void close()
+	throws IOException
+	{
+		synchronized (this)
+		{
+			if (closed)
+			{
+				return;
+			}
+
+			closed = true;
+		}
+
+		LockSupport.unpark(flusher);
+
+		try
+		{
+			flusher.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		map.force();
+		channel.close();
+	}
+
+	// Makes room for a record of the size, evicting the oldest records it
+	// would overlap, and returns where it goes.  Records never straddle the
+	// end of the ring; a WRAP marker, or too little room for one, sends the
+	// next record to the start.
+	//
+	private int reserve(int size)
+	{
+		while (true)
+		{
+			if (count == 0)
+			{
+				tail = head;
+			}
+
+			boolean wrapped = count > 0 && head <= tail;
+
+			if (! wrapped)
+			{
+				if (head + size <= capacity)
+				{
+					return head;
+				}
+
+				if (capacity - head >= Integer.BYTES)
+				{
+					map.putInt(data + head, WRAP);
+				}
+
+				head = 0;
+
+				if (count == 0)
+				{
+					tail = 0;
+					return 0;
+				}
+
+				continue;
+			}
+
+			if (head + size <= tail)
+			{
+				return head;
+			}
+
+			evict();
+		}
+	}
+
+	private void evict()
+	{
+		int length = Math.max(0, recordLength(tail));
+
+		tail += Integer.BYTES + length;
+		count--;
+		first++;
+
+		tail = count == 0 ? head : skipWrap(tail);
+	}
+
+	private int skipWrap(int at)
+	{
+		if (capacity - at < Integer.BYTES || map.getInt(data + at) == WRAP)
+		{
+			return 0;
+		}
+
+		return at;
+	}
+
+	private int slot(long number)
+	{
+		return HEADER + (int) (number % slots) * Integer.BYTES;
+	}
+
+	private static long fileLength(int capacity)
+	{
+		return HEADER + (long) (capacity / BYTES_PER_SLOT) * Integer.BYTES + capacity;
+	}
+
+	// Reads the header.  A header that does not describe the rings, as after
+	// a crash while it was being written, empties the history rather than
+	// failing to open.
+	//
+	private void load()
+	{
+		tail  = map.getInt(AT_TAIL);
+		head  = map.getInt(AT_HEAD);
+		count = map.getInt(AT_COUNT);
+		first = map.getLong(AT_FIRST);
+
+		boolean valid = map.getInt(AT_SLOTS) == slots
+				&& tail  >= 0 && tail  <= capacity
+				&& head  >= 0 && head  <= capacity
+				&& count >= 0 && count <= slots
+				&& first >= 1;
+
+		if (! valid)
+		{
+			tail  = 0;
+			head  = 0;
+			count = 0;
+			first = 1;
+			map.putInt(AT_SLOTS, slots);
+			writeHeader();
+		}
+	}
+
+	private void writeHeader()
+	{
+		map.putInt(AT_TAIL,   tail);
+		map.putInt(AT_HEAD,   head);
+		map.putInt(AT_COUNT,  count);
+		map.putLong(AT_FIRST, first);
+	}
+
+	private String decode(int at)
+	{
+		int length = recordLength(at);
+
+		if (length < 0)
+		{
+			return null;
+		}
+
+		ByteBuffer record = map.duplicate();
+		record.position(data + at + Integer.BYTES);
+
+		byte[] line = new byte[length];
+		record.get(line);
+
+		return new String(line, StandardCharsets.UTF_8);
+	}
+
+	// The length of the record at the offset, or -1 if there is no sound
+	// record there, as in a file damaged while it was being written.
+	//
+	private int recordLength(int at)
+	{
+		if (at < 0 || at > capacity - Integer.BYTES)
+		{
+			return -1;
+		}
+
+		int length = map.getInt(data + at);
+
+		if (length < 1 || length > MAX_LINE_BYTES || at + Integer.BYTES + length > capacity)
+		{
+			return -1;
+		}
+
+		return length;
+	}
+
+	// Callers must hold the lock.
+	//
+	private long find(byte[] text, long before, boolean prefix)
+	{
+		long n = Math.min(before - 1, first + count - 1);
+
+		for (; n >= first; n--)
+		{
+			int     at = map.getInt(slot(n));
+			int length = recordLength(at);
+			int  start = data + at + Integer.BYTES;
+			int   last = prefix ? Math.min(0, length - text.length) : length - text.length;
+
+			for (int i = 0; i <= last; i++)
+			{
+				if (matches(start + i, text))
+				{
+					return n;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	private boolean matches(int at, byte[] text)
+	{
+		for (int j = 0; j < text.length; j++)
+		{
+			if (map.get(at + j) != text[j])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isNumber(String s)
+	{
+		int start = s.startsWith("-") ? 1 : 0;
+
+		if (s.length() == start || s.length() - start > 18)
+		{
+			return false;
+		}
+
+		for (int i = start; i < s.length(); i++)
+		{
+			if (s.charAt(i) < '0' || s.charAt(i) > '9')
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void flushLoop()
+	{
+		while (! closed)
+		{
+			LockSupport.parkNanos(this, FLUSH_INTERVAL);
+
+			if (dirty)
+			{
+				dirty = false;
+				map.force();
+			}
+		}
+	}
+}
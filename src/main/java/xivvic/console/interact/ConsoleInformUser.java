@@ -0,0 +1,91 @@
+package xivvic.console.interact;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * InformUser implementation that prints messages to a PrintStream, by default
+ * System.out, prefixed with their channel and topic.
+ *
+ * Messages are printed on the calling thread.  PrintStream locks each call, so
+ * lines from different threads do not interleave.
+ */
+public class ConsoleInformUser
+implements InformUser, Flushable
+{
+	private final PrintStream out;
+	private TableRenderer     renderer = new TableRenderer();
+
+	public ConsoleInformUser()
+	{
+		this(System.out);
+	}
+
+	public ConsoleInformUser(PrintStream out)
+	{
+		this.out = Objects.requireNonNull(out);
+	}
+
+	@Override
+	public void displayTable(String id, String[] content)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("[").append(id).append("]\n");
+
+		if (content != null)
+		{
+			for (String row : content)
+			{
+				sb.append(row).append('\n');
+			}
+		}
+
+		out.print(sb);
+		out.flush();
+	}
+
+	/**
+	 * Writes the table as its rows are read, with the renderer's settings.
+	 */
+	@Override
+	public void displayTable(String id, String[] header, Iterator<String[]> rows)
+	{
+		out.append("[").append(id).append("]\n");
+
+		try
+		{
+			renderer.render(header, rows, out);
+		}
+		catch (IOException e)
+		{
+			// PrintStream does not throw.
+			//
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Sets how streamed tables are laid out and paged.
+	 */
+	public ConsoleInformUser tableRenderer(TableRenderer renderer)
+	{
+		this.renderer = Objects.requireNonNull(renderer);
+		return this;
+	}
+
+	@Override
+	public void userMessage(MessageChannel channel, String topic, String msg)
+	{
+		out.println("[" + channel + "] " + topic + ": " + msg);
+	}
+
+	@Override
+	public void flush()
+	{
+		out.flush();
+	}
+}
@@ -1,5 +1,9 @@
 package xivvic.console.interact;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
 /**
  * Defines an interface for sending application messages to the user.
  * Application code can use this interface without having to know any
@@ -24,6 +28,37 @@ public interface InformUser
 	 * Table of data to be displayed to user.
 	 */
 	public void displayTable(String id, String[] content);
+
+	/**
+	 * Table of data to be displayed to the user, read a row at a time.
+	 *
+	 * Implementations that can write as they read should override this.  The
+	 * default renders the whole table with a {@link TableRenderer} and passes the
+	 * lines to {@link #displayTable(String, String[])}, so the table must fit in
+	 * memory.
+	 *
+	 * @param id identifies the table
+	 * @param header column titles, or null for none
+	 * @param rows the rows of the table
+	 */
+	public default void displayTable(String id, String[] header, Iterator<String[]> rows)
+	{
+		StringBuilder sb = new StringBuilder();
+
+		try
+		{
+			new TableRenderer().render(header, rows, sb);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder does not throw.
+			//
+			throw new UncheckedIOException(e);
+		}
+
+		String[] lines = sb.length() == 0 ? new String[0] : sb.toString().split("\n");
+		displayTable(id, lines);
+	}
 	/**
 	 * Method exposed to let application components send a message to the user.
 	 * 
@@ -1,17 +1,18 @@
 package xivvic.console.interact;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import xivvic.console.action.Action;
 import xivvic.console.action.ActionManager;
+import xivvic.console.action.LazyAction;
+import xivvic.console.action.Pipeline;
+import xivvic.console.action.StreamAction;
 
 public class InputProcessor
 {
-	private static final String  SPACE         = " ";
-	private static final String  SPLIT_TOKEN   = "##";
-	private static final Pattern SPLIT_PATTERN = Pattern.compile(SPLIT_TOKEN);
+	private static final OpSpec[] NONE = new OpSpec[0];
 
 	// @Threadsafe
 	// Static only class.
@@ -22,12 +23,23 @@ public class InputProcessor
 	/**
 	 * Input processing returns an array of OpSpec object representing the decoded
 	 * commands.  An array is returned because the string input can represent multiple
-	 * commands if they're separated by the {@see SPLIT_TOKEN}.  All commands need to
+	 * commands if they're separated by the {@see InputScanner#SPLIT_TOKEN}.  All commands need to
 	 * be found for this method to return an array of length greater than zero.
 	 *
 	 * Input to a menu selection is a single string.  The string is split and
 	 * an appropriate action is returned.
 	 *
+	 * A verb that names no command, in the context or the global context, may
+	 * be an abbreviation: the start of the names of exactly one command.  See
+	 * {@link ActionManager#abbreviation(CharSequence, CharSequence)}.
+	 *
+	 * Commands joined by {@link InputScanner#PIPE} become one OpSpec, whose action
+	 * is a {@link Pipeline} of their actions, and whose text is the whole of the
+	 * piped command.  Each of the commands must resolve to a {@link StreamAction}.
+	 *
+	 * The input is scanned once, in place.  Contexts and verbs are resolved through
+	 * views over the input, and only the text kept in the returned OpSpecs is copied.
+	 *
 	 * @param context an optional context specification for processing a command.
 	 * @param input the input to process with parameter and Action identified
 	 * @return an array of Operation Specifications, possibly zero length
@@ -37,99 +49,144 @@ public class InputProcessor
 	{
 		if (input == null || input.length() == 0)
 		{
-			return new OpSpec[0];
+			return NONE;
 		}
 
-		List<OpSpec> list = new ArrayList<>();
-		String[]    parts = separateCommands(input);
+		InputScanner scanner = new InputScanner(input);
+		TextRange   explicit = new TextRange(input);
+		TextRange       verb = new TextRange(input);
+		CharSequence   scope = context;
 
-		for (String part : parts)
+		OpSpec[] rv = new OpSpec[scanner.remaining()];
+		int       n = 0;
+
+		List<StreamAction> stages = null;
+		List<String>       params = null;
+		int                 start = 0;
+
+		while (scanner.next())
 		{
-			if (part == null)
+			// An explicit context applies to this command and the ones that follow it.
+			//
+			if (scanner.hasContext())
 			{
-				continue;
+				scope = explicit.set(scanner.contextStart(), scanner.contextEnd());
 			}
 
-			String    verb = part.trim();
-			String   param = null;
-			int      index = part.indexOf(SPACE);
-			if (index > 0)
+			verb.set(scanner.verbStart(), scanner.verbEnd());
+
+			Action action = resolve(scope, verb, am);
+
+			if (action == null)
 			{
-				verb  = part.substring(0, index);
-				param = part.substring(index + 1);
-				param = param.trim();
+				return NONE;
 			}
 
-			int del = verb.indexOf(ActionManager.DELIMITER);
-
-			if (del != -1)
+			if (! scanner.piped() && ! scanner.pipes())
 			{
-				context = verb.substring(0, del);
-				verb    = verb.substring(del + 1);
+				OpSpec os = new OpSpec(scanner.verb(), scanner.parameter());
+				os.action(action);
+
+				rv[n++] = os;
+				continue;
 			}
 
-			Action action = am.command(context, verb);
+			// A lazy action is built to find out whether it streams.
+			//
+			if (action instanceof LazyAction)
+			{
+				action = ((LazyAction) action).get();
+			}
 
-			if (action == null)
+			if (! (action instanceof StreamAction))
 			{
-				action = am.command(ActionManager.GLOBAL_CONTEXT, verb);
+				return NONE;
+			}
 
-				if (action == null)
-				{
-					return new OpSpec[0];
-				}
+			if (! scanner.piped())
+			{
+				stages = new ArrayList<>();
+				params = new ArrayList<>();
+				start  = scanner.start();
 			}
 
-			OpSpec os = new OpSpec(verb, param);
-			os.action(action);
+			stages.add((StreamAction) action);
+			params.add(scanner.parameter());
+
+			if (! scanner.pipes())
+			{
+				OpSpec os = new OpSpec(input.substring(start, scanner.end()), null);
+				os.action(new Pipeline(stages, params));
 
-			list.add(os);
+				rv[n++] = os;
+			}
 		}
 
-		return list.toArray(new OpSpec[0]);
+		return rv;
 	}
 
 	/**
-	 * Converts a single string into a compound set of menu inputs.
-	 * Always returns a valid array, even on bad inputs.
-	 *
-	 * For example, the input
-	 * 2 hello ## 4 ## x taste free
-	 *
-	 * returns a 3 element array containing the strings: 	 "2 hello", "4", "x taste free"
-	 *
-	 * @param input
-	 * @return An array containing separated inputs, or zero length array on error.
+	 * Looks the verb up in the context, then in the global context.  A verb
+	 * that names no command is then tried as an abbreviation, in the same order.
 	 */
-	private static String[] separateCommands(String input)
+	private static Action resolve(CharSequence scope, CharSequence verb, ActionManager am)
 	{
-		if (input == null)
+		Action action = am.command(scope, verb);
+
+		if (action == null)
+		{
+			action = am.command(ActionManager.GLOBAL_CONTEXT, verb);
+		}
+
+		if (action == null)
 		{
-			return new String[0];
+			action = am.abbreviation(scope, verb);
 		}
 
-		if (input.length() == 0)
+		if (action == null)
 		{
-			return new String[0];
+			action = am.abbreviation(ActionManager.GLOBAL_CONTEXT, verb);
 		}
 
-		if (input.indexOf(SPLIT_TOKEN) == -1)
+		return action;
+	}
+
+	/**
+	 * Suggests commands for the first command of the input that does not
+	 * resolve, in the context it would be resolved in.
+	 *
+	 * @param context an optional context specification for processing a command.
+	 * @param input input that {@link #processInput(String, String, ActionManager)} could not resolve
+	 * @return command names, closest first; empty if every command resolves or nothing is close
+	 * @see ActionManager#suggest(CharSequence, CharSequence)
+	 */
+	public static List<String> suggest(String context, String input, ActionManager am)
+	{
+		if (input == null || input.length() == 0)
 		{
-			return new String[] { input.trim() };
+			return Collections.emptyList();
 		}
 
-		String[] items = SPLIT_PATTERN.split(input);
-		for (int i = 0; i < items.length; i++)
+		InputScanner scanner = new InputScanner(input);
+		TextRange   explicit = new TextRange(input);
+		TextRange       verb = new TextRange(input);
+		CharSequence   scope = context;
+
+		while (scanner.next())
 		{
-			if (items[i] == null)
+			if (scanner.hasContext())
 			{
-				continue;
+				scope = explicit.set(scanner.contextStart(), scanner.contextEnd());
 			}
 
-			items[i] = items[i].trim();
+			verb.set(scanner.verbStart(), scanner.verbEnd());
+
+			if (resolve(scope, verb, am) == null)
+			{
+				return am.suggest(scope, verb);
+			}
 		}
 
-		return items;
+		return Collections.emptyList();
 	}
-
 }
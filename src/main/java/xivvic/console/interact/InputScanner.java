@@ -0,0 +1,290 @@
+package xivvic.console.interact;
+
+import xivvic.console.action.ActionManager;
+
+/**
+ * Single pass scanner that splits a line of menu input into commands and each
+ * command into an optional context, a verb and an optional parameter.
+ *
+ * The scanner does not copy the input.  Each call to {@link #next()} moves to the
+ * next command and records the offsets of its parts; callers read them through
+ * the accessors and materialize only what they keep.
+ *
+ * Splitting follows {@link java.util.regex.Pattern#split(CharSequence)} on the
+ * separator: separators are matched left to right without overlap, and empty
+ * commands at the end of the input are discarded.  Each command is trimmed of
+ * leading and trailing characters up to and including space, as by
+ * {@link String#trim()}.  The verb ends at the first space, and the parameter is
+ * the trimmed remainder.  A verb containing the context delimiter is split into
+ * the context before it and the verb after it.
+ *
+ * A command may be split further, at each {@link #PIPE} standing alone, with a
+ * space or the end of the command on either side, into the stages of a
+ * pipeline.  A pipe within a word, as in the parameter "a|b", is left as it
+ * is.  Each stage is returned by {@link #next()} like a command, and is scanned
+ * the same way; {@link #piped()} tells whether it reads the output of the
+ * stage before it.
+ */
+final class InputScanner
+{
+	static final char   SPACE       = ' ';
+	static final String SPLIT_TOKEN = "##";
+	static final char   PIPE        = '|';
+	static final char   DELIMITER   = ActionManager.DELIMITER.charAt(0);
+
+	private final CharSequence input;
+	private final int          length;
+
+	private int position = 0;
+
+	/**
+	 * The end of the command being split into stages, and where the command
+	 * after it starts; -1 between commands.
+	 */
+	private int     commandEnd  = -1;
+	private int     nextCommand = -1;
+	private boolean piped       = false;
+	private boolean pipes       = false;
+
+	private int contextStart;
+	private int contextEnd;
+	private int verbStart;
+	private int verbEnd;
+	private int parameterStart;
+	private int parameterEnd;
+
+	InputScanner(CharSequence input)
+	{
+		this.input  = input;
+		this.length = input.length();
+	}
+
+	/**
+	 * Counts the commands remaining in the input without moving the scanner.
+	 */
+	int remaining()
+	{
+		int count = 0;
+		int   pos = position;
+
+		while (hasCommandAt(pos))
+		{
+			count++;
+			int separator = indexOfSeparator(pos);
+			pos = separator == -1 ? length + 1 : separator + SPLIT_TOKEN.length();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Advance to the next command, or the next stage of a piped command.
+	 *
+	 * @return false if there are no more commands
+	 */
+	boolean next()
+	{
+		if (commandEnd < 0)
+		{
+			if (! hasCommandAt(position))
+			{
+				return false;
+			}
+
+			int separator = indexOfSeparator(position);
+
+			commandEnd  = separator == -1 ? length : separator;
+			nextCommand = separator == -1 ? length + 1 : separator + SPLIT_TOKEN.length();
+			piped       = false;
+		}
+		else
+		{
+			piped = true;
+		}
+
+		int pipe = indexOfPipe(position, commandEnd);
+
+		pipes = pipe != -1;
+		scanCommand(position, pipes ? pipe : commandEnd);
+
+		if (pipes)
+		{
+			position = pipe + 1;
+		}
+		else
+		{
+			position   = nextCommand;
+			commandEnd = -1;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return true if the current stage reads the output of the one before it
+	 */
+	boolean piped()
+	{
+		return piped;
+	}
+
+	/**
+	 * @return true if the current stage writes to the one after it
+	 */
+	boolean pipes()
+	{
+		return pipes;
+	}
+
+	boolean hasContext()
+	{
+		return contextStart >= 0;
+	}
+
+	boolean hasParameter()
+	{
+		return parameterStart >= 0;
+	}
+
+	int start()          { return contextStart >= 0 ? contextStart : verbStart; }
+	int end()            { return parameterStart >= 0 ? parameterEnd : verbEnd; }
+	int contextStart()   { return contextStart;   }
+	int contextEnd()     { return contextEnd;     }
+	int verbStart()      { return verbStart;      }
+	int verbEnd()        { return verbEnd;        }
+	int parameterStart() { return parameterStart; }
+	int parameterEnd()   { return parameterEnd;   }
+
+	String verb()
+	{
+		return text(verbStart, verbEnd);
+	}
+
+	String parameter()
+	{
+		return hasParameter() ? text(parameterStart, parameterEnd) : null;
+	}
+
+	private String text(int start, int end)
+	{
+		return input.subSequence(start, end).toString();
+	}
+
+	// A command starts at pos unless pos is past the end of the input, or only
+	// separators remain, in which case every remaining command would be empty.
+	//
+	private boolean hasCommandAt(int pos)
+	{
+		if (pos >= length)
+		{
+			return false;
+		}
+
+		int size = SPLIT_TOKEN.length();
+		for (int i = pos; i < length; i += size)
+		{
+			if (! separatorAt(i))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private int indexOfPipe(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			if (input.charAt(i) == PIPE && (i == from || input.charAt(i - 1) <= SPACE) && (i + 1 == to || input.charAt(i + 1) <= SPACE))
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private int indexOfSeparator(int from)
+	{
+		int last = length - SPLIT_TOKEN.length();
+		for (int i = from; i <= last; i++)
+		{
+			if (separatorAt(i))
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private boolean separatorAt(int i)
+	{
+		int size = SPLIT_TOKEN.length();
+		if (i + size > length)
+		{
+			return false;
+		}
+
+		for (int j = 0; j < size; j++)
+		{
+			if (input.charAt(i + j) != SPLIT_TOKEN.charAt(j))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void scanCommand(int start, int end)
+	{
+		while (start < end && input.charAt(start) <= SPACE)
+		{
+			start++;
+		}
+
+		while (end > start && input.charAt(end - 1) <= SPACE)
+		{
+			end--;
+		}
+
+		verbStart      = start;
+		verbEnd        = end;
+		contextStart   = -1;
+		contextEnd     = -1;
+		parameterStart = -1;
+		parameterEnd   = -1;
+
+		for (int i = start + 1; i < end; i++)
+		{
+			if (input.charAt(i) == SPACE)
+			{
+				verbEnd = i;
+
+				int ps = i + 1;
+				int pe = end;
+				while (ps < pe && input.charAt(ps) <= SPACE)
+				{
+					ps++;
+				}
+
+				parameterStart = ps;
+				parameterEnd   = pe;
+				break;
+			}
+		}
+
+		for (int i = verbStart; i < verbEnd; i++)
+		{
+			if (input.charAt(i) == DELIMITER)
+			{
+				contextStart = verbStart;
+				contextEnd   = i;
+				verbStart    = i + 1;
+				break;
+			}
+		}
+	}
+}
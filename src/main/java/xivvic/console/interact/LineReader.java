@@ -0,0 +1,223 @@
+package xivvic.console.interact;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Reads lines of text from a byte stream or channel with reusable buffers.
+ *
+ * Bytes are read into one large ByteBuffer and decoded straight into one CharBuffer.
+ * {@link #readLine()} hands back a view of the line held in a reused builder, so
+ * reading a line allocates nothing once the buffers have grown to the longest line.
+ * Use {@link #readLineString()} to get a String that outlives the next read.
+ *
+ * Lines end at '\n', '\r' or "\r\n", as with {@link java.io.BufferedReader#readLine()}.
+ * Malformed input is replaced rather than reported.
+ *
+ * A stream is read with {@link InputStream#read(byte[], int, int)} into the
+ * buffer's array, not through a channel over it.  Channels from
+ * {@link java.nio.channels.Channels#newChannel(InputStream)} are interruptible,
+ * and close for good when a thread reading them is interrupted, which would
+ * close the console.
+ *
+ * Not thread safe.
+ */
+public class LineReader
+implements Closeable
+{
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private final InputStream         stream;
+	private final ReadableByteChannel channel;
+	private final CharsetDecoder      decoder;
+	private final ByteBuffer          bytes;
+	private final CharBuffer          chars;
+	private final StringBuilder       line = new StringBuilder(128);
+
+	private boolean eof    = false;
+	private boolean done   = false;
+	private boolean skipLF = false;
+
+	public LineReader(InputStream in)
+	{
+		this(in, StandardCharsets.UTF_8);
+	}
+
+	public LineReader(InputStream in, Charset charset)
+	{
+		this(Objects.requireNonNull(in), null, charset, DEFAULT_BUFFER_SIZE);
+	}
+
+	public LineReader(ReadableByteChannel channel, Charset charset, int bufferSize)
+	{
+		this(null, Objects.requireNonNull(channel), charset, bufferSize);
+	}
+
+	private LineReader(InputStream stream, ReadableByteChannel channel, Charset charset, int bufferSize)
+	{
+		if (bufferSize < 16)
+		{
+			throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+		}
+
+		this.stream  = stream;
+		this.channel = channel;
+		this.decoder = charset.newDecoder()
+		               .onMalformedInput(CodingErrorAction.REPLACE)
+		               .onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.bytes   = ByteBuffer.allocate(bufferSize);
+		this.chars   = CharBuffer.allocate(bufferSize);
+
+		// Both buffers start out empty, in read mode.
+		//
+		bytes.flip();
+		chars.flip();
+	}
+
+	/**
+	 * Reads the next line, without its terminator.
+	 *
+	 * @return a view of the line, valid until the next read, or null at end of input
+	 */
+	public CharSequence readLine()
+	throws IOException
+	{
+		line.setLength(0);
+		boolean any = false;
+
+		while (true)
+		{
+			if (! chars.hasRemaining() && ! fill())
+			{
+				return any ? line : null;
+			}
+
+			char[] array = chars.array();
+			int    start = chars.arrayOffset() + chars.position();
+			int      end = chars.arrayOffset() + chars.limit();
+
+			if (skipLF)
+			{
+				skipLF = false;
+				if (array[start] == '\n')
+				{
+					chars.position(chars.position() + 1);
+					continue;
+				}
+			}
+
+			for (int i = start; i < end; i++)
+			{
+				char c = array[i];
+				if (c == '\n' || c == '\r')
+				{
+					line.append(array, start, i - start);
+					chars.position(chars.position() + (i - start) + 1);
+					skipLF = c == '\r';
+					return line;
+				}
+			}
+
+			line.append(array, start, end - start);
+			chars.position(chars.limit());
+			any = true;
+		}
+	}
+
+	/**
+	 * Reads the next line as a String.
+	 *
+	 * @return the line, or null at end of input
+	 */
+	public String readLineString()
+	throws IOException
+	{
+		CharSequence cs = readLine();
+		return cs == null ? null : cs.toString();
+	}
+
+	@Override
+	public void close()
+	throws IOException
+	{
+		if (stream != null)
+		{
+			stream.close();
+		}
+		else
+		{
+			channel.close();
+		}
+	}
+
+	// Refills the (empty) char buffer.  Returns false at end of input.
+	//
+	private boolean fill()
+	throws IOException
+	{
+		chars.clear();
+
+		if (done)
+		{
+			chars.flip();
+			return false;
+		}
+
+		while (true)
+		{
+			CoderResult result = decoder.decode(bytes, chars, eof);
+
+			if (result.isOverflow() || chars.position() > 0)
+			{
+				chars.flip();
+				return true;
+			}
+
+			if (eof)
+			{
+				decoder.flush(chars);
+				done = true;
+				chars.flip();
+				return chars.hasRemaining();
+			}
+
+			bytes.compact();
+			int n = read();
+			bytes.flip();
+
+			if (n < 0)
+			{
+				eof = true;
+			}
+		}
+	}
+
+	// Reads into the (write mode) byte buffer.  Returns -1 at end of input.
+	//
+	private int read()
+	throws IOException
+	{
+		if (stream == null)
+		{
+			return channel.read(bytes);
+		}
+
+		int n = stream.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+		if (n > 0)
+		{
+			bytes.position(bytes.position() + n);
+		}
+
+		return n;
+	}
+}
@@ -0,0 +1,124 @@
+package xivvic.console.interact;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free ring buffer of messages.
+ *
+ * Each slot carries a sequence number that tells producers when the slot is
+ * free and consumers when it is full, so offering and polling each take a
+ * single compare-and-set on the shared position, with no lock and no
+ * allocation.  Any number of threads may offer and poll.  Producers poll too,
+ * when a full ring must drop its oldest message to make room.
+ *
+ * @Threadsafe
+ *
+ * @param <E> type of the elements held
+ */
+final class MessageRing<E>
+{
+	private final Object[]        buffer;
+	private final AtomicLongArray sequence;
+	private final int             mask;
+	private final AtomicLong      tail = new AtomicLong();
+	private final AtomicLong      head = new AtomicLong();
+
+	/**
+	 * @param capacity the number of elements held, rounded up to a power of two
+	 */
+	MessageRing(int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+		}
+
+		int size = 2;
+		while (size < capacity)
+		{
+			size <<= 1;
+		}
+
+		buffer   = new Object[size];
+		sequence = new AtomicLongArray(size);
+		mask     = size - 1;
+
+		for (int i = 0; i < size; i++)
+		{
+			sequence.set(i, i);
+		}
+	}
+
+	int capacity()
+	{
+		return buffer.length;
+	}
+
+	/**
+	 * @return false if the ring is full
+	 */
+	boolean offer(E element)
+	{
+		long pos = tail.get();
+
+		while (true)
+		{
+			int  slot = (int) pos & mask;
+			long diff = sequence.get(slot) - pos;
+
+			if (diff == 0)
+			{
+				if (tail.compareAndSet(pos, pos + 1))
+				{
+					buffer[slot] = element;
+					sequence.lazySet(slot, pos + 1);
+					return true;
+				}
+			}
+			else if (diff < 0)
+			{
+				return false;
+			}
+
+			pos = tail.get();
+		}
+	}
+
+	/**
+	 * @return the oldest element, or null if the ring is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E poll()
+	{
+		long pos = head.get();
+
+		while (true)
+		{
+			int  slot = (int) pos & mask;
+			long diff = sequence.get(slot) - (pos + 1);
+
+			if (diff == 0)
+			{
+				if (head.compareAndSet(pos, pos + 1))
+				{
+					E element = (E) buffer[slot];
+					buffer[slot] = null;
+					sequence.lazySet(slot, pos + buffer.length);
+					return element;
+				}
+			}
+			else if (diff < 0)
+			{
+				return null;
+			}
+
+			pos = head.get();
+		}
+	}
+
+	boolean isEmpty()
+	{
+		return head.get() >= tail.get();
+	}
+}
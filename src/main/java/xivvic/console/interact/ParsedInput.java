@@ -0,0 +1,35 @@
+package xivvic.console.interact;
+
+import java.util.Objects;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * ParsedInput is a line of user input that has been tokenized and resolved into
+ * operations exactly once.
+ *
+ * The same object is validated and then executed, so the work of splitting compound
+ * input and looking up each action is not repeated between the two steps.
+ *
+ * An input is valid when every command it contains resolved to an action.
+ */
+
+@Data
+@Accessors(fluent = true)
+public class ParsedInput
+{
+	private final String   input;
+	private final OpSpec[] ops;
+
+	public ParsedInput(String input, OpSpec[] ops)
+	{
+		this.input = input;
+		this.ops   = Objects.requireNonNull(ops);
+	}
+
+	public boolean isValid()
+	{
+		return ops.length > 0 && ops[0] != null && ops[0].action() != null;
+	}
+}
@@ -0,0 +1,79 @@
+package xivvic.console.interact;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import xivvic.console.action.ActionResult;
+import xivvic.console.action.CancellationToken;
+
+/**
+ * ResultRenderer shows action results to a person at the console.
+ *
+ * A value is printed on a line, a table is written by a {@link TableRenderer},
+ * and the records of a stream are printed one per line, as they are read.
+ * Printing a stream stops once the running action is cancelled.
+ *
+ * Used as the result handler of an interactive session's cursor.  See
+ * {@link xivvic.console.menu.MenuCursor#results(Consumer)}.
+ */
+public class ResultRenderer
+implements Consumer<ActionResult>
+{
+	private final PrintStream   out;
+	private final TableRenderer tables;
+
+	public ResultRenderer(PrintStream out)
+	{
+		this(out, new TableRenderer());
+	}
+
+	/**
+	 * @param out where results are written
+	 * @param tables writes table results, with its own paging
+	 */
+	public ResultRenderer(PrintStream out, TableRenderer tables)
+	{
+		this.out    = Objects.requireNonNull(out);
+		this.tables = Objects.requireNonNull(tables);
+	}
+
+	@Override
+	public void accept(ActionResult result)
+	{
+		switch (result.kind())
+		{
+		case VALUE:
+			out.println(result.value());
+			break;
+		case TABLE:
+			try
+			{
+				tables.render(result.header(), result.rows(), out);
+			}
+			catch (IOException e)
+			{
+				// PrintStream.append does not throw.
+				//
+				throw new UncheckedIOException(e);
+			}
+			break;
+		case STREAM:
+			Iterator<?>       records = result.records();
+			CancellationToken   token = CancellationToken.current();
+
+			while (records.hasNext() && ! token.isCancelled())
+			{
+				out.println(records.next());
+			}
+			break;
+		default:
+			break;
+		}
+
+		out.flush();
+	}
+}
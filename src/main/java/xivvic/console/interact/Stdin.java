@@ -28,37 +28,95 @@ package xivvic.console.interact;
 // CRT: Modified
 //
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
 import java.util.List;
 import java.util.Objects;
 
+import xivvic.console.action.CancellationToken;
+
 public class Stdin
 {
 	public static String DEFAULT_CONFIRM_PROMPT = "Are you sure? ";
 
-	private final BufferedReader in;
+	private final LineReader in;
 	private final PrintStream out;
 	public Stdin(InputStream is, PrintStream out)
+	{
+		this(is, out, StandardCharsets.UTF_8);
+	}
+
+	public Stdin(InputStream is, PrintStream out, Charset charset)
 	{
 		Objects.requireNonNull(is);
 		this.out = Objects.requireNonNull(out);
-		this.in  = new BufferedReader(new InputStreamReader(is));
+		this.in  = new LineReader(is, Objects.requireNonNull(charset));
 	}
 
+	/**
+	 * Reads a line.  A stream that fails is treated as ended, so callers that
+	 * loop until the end of input stop.
+	 *
+	 * @return the line, or null at end of input
+	 */
 	public String getString()
 	{
+		try
+		{
+			return readString();
+		}
+		catch (IOException e)
+		{
+			out.println("getString() exception, treating as end of input: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a line without copying it.  The returned view is only valid until
+	 * the next read from this Stdin.
+	 *
+	 * @return the line, or null at end of input, or if the stream fails
+	 */
+	public CharSequence getLine()
+	{
+		CancellationToken token = CancellationToken.current().holdInterrupts();
+
 		try
 		{
 			return in.readLine();
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
-			out.println("getString() exception, returning empty string");
-			return "";
+			out.println("getLine() exception, treating as end of input: " + e);
+			return null;
+		}
+		finally
+		{
+			token.releaseInterrupts();
+		}
+	}
+
+	// Reads a line with the running action's cancellation interrupts held back.
+	// The user's answer is waited for, and an action cancelled meanwhile is
+	// interrupted once it has arrived.
+	//
+	private String readString()
+	throws IOException
+	{
+		CancellationToken token = CancellationToken.current().holdInterrupts();
+
+		try
+		{
+			return in.readLineString();
+		}
+		finally
+		{
+			token.releaseInterrupts();
 		}
 	}
 
@@ -126,7 +184,7 @@ public class Stdin
 		try
 		{
 			out.print(prompt);
-			String input = in.readLine();
+			String input = readString();
 			if (input == null || input.length() == 0)
 			{
 				return def;
@@ -141,7 +199,7 @@ public class Stdin
 
 			return false;
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
 			out.println("Exception confirming user action. Returning false.");
 			return false;
@@ -158,14 +216,14 @@ public class Stdin
 		try
 		{
 			System.out.print(prompt);
-			String input = in.readLine();
+			String input = readString();
 			if (input == null || input.length() == 0)
 			{
 				return def == null ? "" : def;
 			}
 			return input;
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
 			System.out.println("getString() exception, returning empty string");
 			return "";
@@ -177,7 +235,7 @@ public class Stdin
 	public char getChar()
 	{
 		String s = getString();
-		if (s.length() >= 1)
+		if (s != null && s.length() >= 1)
 		{
 			return s.charAt(0);
 		}
@@ -0,0 +1,467 @@
+package xivvic.console.interact;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import xivvic.console.action.CancellationToken;
+
+/**
+ * TableRenderer writes rows of text as an aligned table, or as TSV or CSV, as
+ * they are read, so a table of any length can be shown in bounded memory.
+ *
+ * Column widths are taken from the header and the first rows, up to the
+ * sample size, which are the only rows held at once.  Cells wider than their
+ * column, in later rows, or wider than the maximum column width, are cut short
+ * and end with '~'.  Exports are never cut short.
+ *
+ * A pager, if set, is consulted after every page of rows and can stop the
+ * output early.
+ *
+ * A renderer holds only its settings, so one can be shared, but the setters
+ * are not thread safe.
+ */
+public class TableRenderer
+{
+	public static final int DEFAULT_SAMPLE_SIZE      = 1000;
+	public static final int DEFAULT_MAX_COLUMN_WIDTH = 40;
+	public static final int DEFAULT_PAGE_SIZE        = 50;
+
+	private static final String SEPARATOR     = "  ";
+	private static final int    EXPORT_BUFFER = 1 << 16;
+
+	/**
+	 * Delimited export formats.
+	 */
+	public enum Format
+	{
+		/**
+		 * Tab separated.  Tabs, line breaks and backslashes in cells are written
+		 * as \t, \n, \r and \\.
+		 */
+		TSV,
+
+		/**
+		 * Comma separated, as in RFC 4180.  Cells holding a comma, a quote or a
+		 * line break are quoted.
+		 */
+		CSV,
+		;
+	}
+
+	/**
+	 * Decides whether output goes on after each page.
+	 */
+	@FunctionalInterface
+	public interface Pager
+	{
+		/**
+		 * @param rows the number of rows written so far
+		 * @return true to write another page, false to stop
+		 */
+		boolean more(long rows);
+	}
+
+	private int   sampleSize     = DEFAULT_SAMPLE_SIZE;
+	private int   maxColumnWidth = DEFAULT_MAX_COLUMN_WIDTH;
+	private int   pageSize       = DEFAULT_PAGE_SIZE;
+	private Pager pager          = null;
+
+	public TableRenderer sampleSize(int rows)
+	{
+		if (rows < 1)
+		{
+			throw new IllegalArgumentException("Sample size must be at least 1: " + rows);
+		}
+
+		sampleSize = rows;
+		return this;
+	}
+
+	public TableRenderer maxColumnWidth(int width)
+	{
+		if (width < 2)
+		{
+			throw new IllegalArgumentException("Maximum column width must be at least 2: " + width);
+		}
+
+		maxColumnWidth = width;
+		return this;
+	}
+
+	/**
+	 * Pause after every page of rows to ask the pager whether to go on.  A null
+	 * pager writes every row without pausing.
+	 */
+	public TableRenderer paging(int rows, Pager pager)
+	{
+		if (rows < 1)
+		{
+			throw new IllegalArgumentException("Page size must be at least 1: " + rows);
+		}
+
+		this.pageSize = rows;
+		this.pager    = pager;
+		return this;
+	}
+
+	/**
+	 * A pager that prompts on the output and waits for a line of input.  An
+	 * empty line shows the next page; "q" or the end of the input stops, as
+	 * does cancelling the running action while the pager waits.
+	 */
+	public static Pager prompt(Stdin in, PrintStream out)
+	{
+		Objects.requireNonNull(in);
+		Objects.requireNonNull(out);
+
+		return rows ->
+		{
+			out.print("-- [" + rows + "] rows, Enter for more, q to quit -- ");
+			out.flush();
+
+			CharSequence line = in.getLine();
+
+			if (line == null || CancellationToken.current().isCancelled())
+			{
+				return false;
+			}
+
+			return ! (line.length() > 0 && Character.toLowerCase(line.charAt(0)) == 'q');
+		};
+	}
+
+	public long render(String[] header, Spliterator<String[]> rows, Appendable out)
+	throws IOException
+	{
+		return render(header, Spliterators.iterator(rows), out);
+	}
+
+	/**
+	 * Writes the rows as an aligned table, a row at a time.
+	 *
+	 * @param header column titles, or null for none
+	 * @param rows the rows; null cells are shown empty
+	 * @param out where the table is written.  Flushed after each page if it is Flushable.
+	 * @return the number of rows written
+	 */
+	public long render(String[] header, Iterator<String[]> rows, Appendable out)
+	throws IOException
+	{
+		Objects.requireNonNull(rows);
+		Objects.requireNonNull(out);
+
+		Deque<String[]> sample = new ArrayDeque<>();
+		while (sample.size() < sampleSize && rows.hasNext())
+		{
+			sample.add(rows.next());
+		}
+
+		int[]          widths = widths(header, sample);
+		StringBuilder     row = new StringBuilder();
+
+		if (header != null)
+		{
+			appendRow(row, header, widths);
+			appendRule(row, widths);
+			out.append(row);
+		}
+
+		long count = 0;
+
+		while (true)
+		{
+			String[] cells;
+
+			if (! sample.isEmpty())
+			{
+				cells = sample.removeFirst();
+			}
+			else if (rows.hasNext())
+			{
+				cells = rows.next();
+			}
+			else
+			{
+				break;
+			}
+
+			appendRow(row, cells, widths);
+			out.append(row);
+			count++;
+
+			if (count % pageSize == 0)
+			{
+				flush(out);
+
+				boolean remaining = ! sample.isEmpty() || rows.hasNext();
+
+				if (pager != null && remaining && ! pager.more(count))
+				{
+					break;
+				}
+			}
+		}
+
+		flush(out);
+		return count;
+	}
+
+	/**
+	 * Writes the rows, a row at a time, with no limit on cell width and no paging.
+	 *
+	 * @param header column titles, or null for none
+	 * @param rows the rows; null cells are written empty
+	 * @param format TSV or CSV
+	 * @param out where the rows are written.  Should be buffered.
+	 * @return the number of rows written, not counting the header
+	 */
+	public static long export(String[] header, Iterator<String[]> rows, Format format, Writer out)
+	throws IOException
+	{
+		Objects.requireNonNull(rows);
+		Objects.requireNonNull(format);
+
+		StringBuilder line = new StringBuilder();
+
+		if (header != null)
+		{
+			appendDelimited(line, header, format);
+			out.append(line);
+		}
+
+		long count = 0;
+
+		while (rows.hasNext())
+		{
+			appendDelimited(line, rows.next(), format);
+			out.append(line);
+			count++;
+		}
+
+		out.flush();
+		return count;
+	}
+
+	/**
+	 * Exports the rows to a file through a 64K buffer.  See
+	 * {@link #export(String[], Iterator, Format, Writer)}.
+	 */
+	public static long export(String[] header, Iterator<String[]> rows, Format format, Path file, Charset charset)
+	throws IOException
+	{
+		Writer writer = new OutputStreamWriter(Files.newOutputStream(file), charset);
+
+		try (Writer out = new BufferedWriter(writer, EXPORT_BUFFER))
+		{
+			return export(header, rows, format, out);
+		}
+	}
+
+	private int[] widths(String[] header, Deque<String[]> sample)
+	{
+		int columns = header == null ? 0 : header.length;
+		for (String[] cells : sample)
+		{
+			columns = Math.max(columns, cells == null ? 0 : cells.length);
+		}
+
+		int[] widths = new int[columns];
+		measure(widths, header);
+		for (String[] cells : sample)
+		{
+			measure(widths, cells);
+		}
+
+		for (int i = 0; i < widths.length; i++)
+		{
+			widths[i] = Math.max(1, Math.min(widths[i], maxColumnWidth));
+		}
+
+		return widths;
+	}
+
+	private static void measure(int[] widths, String[] cells)
+	{
+		if (cells == null)
+		{
+			return;
+		}
+
+		for (int i = 0; i < cells.length; i++)
+		{
+			if (cells[i] != null)
+			{
+				widths[i] = Math.max(widths[i], cells[i].length());
+			}
+		}
+	}
+
+	// Cells beyond the sampled columns are written at their own width.
+	//
+	private static void appendRow(StringBuilder row, String[] cells, int[] widths)
+	{
+		row.setLength(0);
+
+		int columns = Math.max(widths.length, cells == null ? 0 : cells.length);
+
+		for (int i = 0; i < columns; i++)
+		{
+			String cell = cells == null || i >= cells.length || cells[i] == null ? "" : cells[i];
+			boolean last = i == columns - 1;
+
+			if (i > 0)
+			{
+				row.append(SEPARATOR);
+			}
+
+			if (i >= widths.length)
+			{
+				row.append(cell);
+				continue;
+			}
+
+			int width = widths[i];
+
+			if (cell.length() > width)
+			{
+				row.append(cell, 0, width - 1).append('~');
+			}
+			else
+			{
+				row.append(cell);
+
+				// No trailing blanks on the last column.
+				//
+				if (! last)
+				{
+					pad(row, width - cell.length());
+				}
+			}
+		}
+
+		row.append('\n');
+	}
+
+	private static void appendRule(StringBuilder row, int[] widths)
+	{
+		for (int i = 0; i < widths.length; i++)
+		{
+			if (i > 0)
+			{
+				row.append(SEPARATOR);
+			}
+
+			char[] dashes = new char[widths[i]];
+			Arrays.fill(dashes, '-');
+			row.append(dashes);
+		}
+
+		row.append('\n');
+	}
+
+	private static void pad(StringBuilder row, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			row.append(' ');
+		}
+	}
+
+	private static void appendDelimited(StringBuilder line, String[] cells, Format format)
+	{
+		line.setLength(0);
+
+		if (cells != null)
+		{
+			for (int i = 0; i < cells.length; i++)
+			{
+				if (i > 0)
+				{
+					line.append(format == Format.TSV ? '\t' : ',');
+				}
+
+				String cell = cells[i] == null ? "" : cells[i];
+
+				if (format == Format.TSV)
+				{
+					appendTsv(line, cell);
+				}
+				else
+				{
+					appendCsv(line, cell);
+				}
+			}
+		}
+
+		line.append(format == Format.TSV ? "\n" : "\r\n");
+	}
+
+	private static void appendTsv(StringBuilder line, String cell)
+	{
+		for (int i = 0; i < cell.length(); i++)
+		{
+			char c = cell.charAt(i);
+
+			switch (c)
+			{
+			case '\t': line.append("\\t");  break;
+			case '\n': line.append("\\n");  break;
+			case '\r': line.append("\\r");  break;
+			case '\\': line.append("\\\\"); break;
+			default:   line.append(c);      break;
+			}
+		}
+	}
+
+	private static void appendCsv(StringBuilder line, String cell)
+	{
+		boolean quote = false;
+
+		for (int i = 0; i < cell.length() && ! quote; i++)
+		{
+			char c = cell.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+
+		if (! quote)
+		{
+			line.append(cell);
+			return;
+		}
+
+		line.append('"');
+		for (int i = 0; i < cell.length(); i++)
+		{
+			char c = cell.charAt(i);
+			if (c == '"')
+			{
+				line.append('"');
+			}
+			line.append(c);
+		}
+		line.append('"');
+	}
+
+	private static void flush(Appendable out)
+	throws IOException
+	{
+		if (out instanceof Flushable)
+		{
+			((Flushable) out).flush();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package xivvic.console.interact;
+
+/**
+ * A reusable, mutable view over a range of characters in another CharSequence.
+ *
+ * Lets the input tokenizer hand a verb or context to the ActionManager without
+ * copying it into a new String.  A view is only valid until it is moved with
+ * {@link #set(int, int)}; call {@link #toString()} to keep the text.
+ */
+final class TextRange
+implements CharSequence
+{
+	private final CharSequence source;
+	private int start;
+	private int end;
+
+	TextRange(CharSequence source)
+	{
+		this.source = source;
+	}
+
+	TextRange set(int start, int end)
+	{
+		this.start = start;
+		this.end   = end;
+		return this;
+	}
+
+	@Override
+	public int length()
+	{
+		return end - start;
+	}
+
+	@Override
+	public char charAt(int index)
+	{
+		if (index < 0 || index >= end - start)
+		{
+			throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+		}
+
+		return source.charAt(start + index);
+	}
+
+	@Override
+	public CharSequence subSequence(int from, int to)
+	{
+		if (from < 0 || to > end - start || from > to)
+		{
+			throw new IndexOutOfBoundsException("range [" + from + ", " + to + "), length " + (end - start));
+		}
+
+		return source.subSequence(start + from, start + to);
+	}
+
+	@Override
+	public String toString()
+	{
+		return source.subSequence(start, end).toString();
+	}
+}
@@ -0,0 +1,164 @@
+package xivvic.console.menu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import xivvic.console.action.Action;
+
+/**
+ * Macro replays a recorded sequence of commands as one command.
+ *
+ * Each step holds the action a command resolved to when it was recorded, and
+ * its parameter, so a replay neither scans the input nor looks the commands up
+ * again.  Menu transitions are steps like any other and move the cursor the
+ * macro is run on.  A replay stops early if a step leaves the menus.
+ *
+ * Parameters may refer to the macro's own parameter: $1 to $9 are its words,
+ * $* is the whole of it and $$ is a dollar sign.  Words that were not given
+ * are empty.
+ *
+ * See {@link MenuManager#addMacroActions()}.
+ */
+public final class Macro
+extends NavigationAction
+{
+	private final MenuManager manager;
+	private final List<Step>  steps;
+
+	Macro(String name, MenuManager manager, List<Step> steps)
+	{
+		super(name, "Macro of [" + steps.size() + "] commands", true, manager);
+
+		this.manager = Objects.requireNonNull(manager);
+		this.steps   = new ArrayList<>(steps);
+	}
+
+	public int size()
+	{
+		return steps.size();
+	}
+
+	@Override
+	protected void navigate(MenuCursor cursor, Object param)
+	{
+		String    all = param == null ? "" : param.toString().trim();
+		String[] args = words(all);
+
+		for (Step step : steps)
+		{
+			if (cursor.isDone())
+			{
+				break;
+			}
+
+			manager.run(cursor, step.action, bind(step.parameter, all, args));
+		}
+	}
+
+	static String[] words(String text)
+	{
+		return text == null || text.trim().isEmpty() ? new String[0] : text.trim().split("\\s+");
+	}
+
+	/**
+	 * Replaces the placeholders in the template.
+	 *
+	 * @return the parameter, or null if the template is null
+	 */
+	static String bind(String template, String all, String[] args)
+	{
+		if (template == null || template.indexOf('$') < 0)
+		{
+			return template;
+		}
+
+		StringBuilder rv = new StringBuilder(template.length() + all.length());
+
+		for (int i = 0; i < template.length(); i++)
+		{
+			char c = template.charAt(i);
+			char n = i + 1 < template.length() ? template.charAt(i + 1) : 0;
+
+			if (c != '$')
+			{
+				rv.append(c);
+			}
+			else if (n >= '1' && n <= '9')
+			{
+				int index = n - '1';
+				rv.append(index < args.length ? args[index] : "");
+				i++;
+			}
+			else if (n == '*')
+			{
+				rv.append(all);
+				i++;
+			}
+			else if (n == '$')
+			{
+				rv.append('$');
+				i++;
+			}
+			else
+			{
+				rv.append(c);
+			}
+		}
+
+		return rv.toString();
+	}
+
+	/**
+	 * A resolved command: the action and its parameter, which may hold placeholders.
+	 */
+	static final class Step
+	{
+		private final Action action;
+		private final String parameter;
+
+		Step(Action action, String parameter)
+		{
+			this.action    = Objects.requireNonNull(action);
+			this.parameter = parameter;
+		}
+	}
+
+	/**
+	 * The steps of a macro being recorded on a cursor, and the sample values
+	 * its placeholders take while it is recorded.
+	 */
+	static final class Recorder
+	{
+		private final String     name;
+		private final String     sample;
+		private final String[]   sampleArgs;
+		private final List<Step> steps = new ArrayList<>();
+
+		Recorder(String name, String sample)
+		{
+			this.name       = name;
+			this.sample     = sample == null ? "" : sample.trim();
+			this.sampleArgs = words(this.sample);
+		}
+
+		String name()
+		{
+			return name;
+		}
+
+		/**
+		 * Records the command and returns the parameter to run it with now.
+		 */
+		String record(Action action, String parameter)
+		{
+			steps.add(new Step(action, parameter));
+			return bind(parameter, sample, sampleArgs);
+		}
+
+		Macro build(MenuManager manager)
+		{
+			return new Macro(name, manager, steps);
+		}
+	}
+}
@@ -1,14 +1,23 @@
 package xivvic.console.menu;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.experimental.Accessors;
 import xivvic.console.action.Action;
-import xivvic.console.action.ActionBase;
 
+/**
+ * A titled list of items.  Menus are built on one thread, and become
+ * immutable once registered with a {@link MenuManager}, so the menu graph
+ * can be shared by every session's {@link MenuCursor}.  Changing a
+ * registered menu throws IllegalStateException.
+ */
 @Data
 @Accessors(fluent = true)
 public class Menu
@@ -37,6 +46,20 @@ public class Menu
 	 */
 	private String title;
 
+	/**
+	 * Bumped whenever the menu's title or items change.  Used to tell whether
+	 * a rendering of the menu is stale.
+	 */
+	@Setter(AccessLevel.NONE)
+	private transient long version;
+
+	/**
+	 * Set once the menu is registered, after which it no longer changes.
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private transient volatile boolean frozen;
+
 	/**
 	 * Basic constructor
 	 * @param _title Menu's title for display
@@ -68,7 +91,9 @@ public class Menu
 			return false;
 		}
 
+		checkNotFrozen();
 		items.add(item);
+		version++;
 		return true;
 	}
 
@@ -107,17 +132,18 @@ public class Menu
 			return false;
 		}
 
+		checkNotFrozen();
 		manager.addMenu(menu);
 
 		final String description = "Choose a submenu and make it the active menu";
 		final String title       = menu.title();
 
-		Action action = new ActionBase(title, description, true)
+		Action action = new NavigationAction(title, description, true, manager)
 		{
 			@Override
-			public void internal_invoke(Object input)
+			protected void navigate(MenuCursor cursor, Object input)
 			{
-				manager.push(menu);
+				cursor.push(menu);
 			}
 		};
 
@@ -167,6 +193,45 @@ public class Menu
 	}
 
 
+	public Menu title(String title)
+	{
+		checkNotFrozen();
+		this.title = title;
+		version++;
+		return this;
+	}
+
+	public Menu items(List<MenuItem> items)
+	{
+		checkNotFrozen();
+		this.items = items;
+		version++;
+		return this;
+	}
+
+	/**
+	 * Called when the menu is registered.  Later changes throw, and the item
+	 * list is replaced by an unmodifiable copy, so items() cannot change it either.
+	 */
+	void freeze()
+	{
+		if (frozen)
+		{
+			return;
+		}
+
+		items  = Collections.unmodifiableList(new ArrayList<>(items));
+		frozen = true;
+	}
+
+	private void checkNotFrozen()
+	{
+		if (frozen)
+		{
+			throw new IllegalStateException("Menu " + code + " is registered and can no longer change");
+		}
+	}
+
 	@Override
 	public String toString()
 	{
@@ -0,0 +1,230 @@
+package xivvic.console.menu;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+import xivvic.console.action.ActionResult;
+import xivvic.console.action.CancellationToken;
+import xivvic.console.interact.InformUser;
+
+/**
+ * MenuCursor is one user's position in the menus: a stack of menus, starting
+ * with the main menu, with the active menu on top.
+ *
+ * Menus and their actions are shared by every user of a {@link MenuManager};
+ * the cursor is the only per-user state.  It is passed to the manager with each
+ * command, and navigation actions move it.  See {@link NavigationAction}.
+ *
+ * Not thread safe.  Each session should have its own cursor.
+ */
+public class MenuCursor
+{
+	private final Deque<Menu>     stack;
+	private final MenuRenderCache renderCache = new MenuRenderCache();
+
+	/**
+	 * Where async actions started from this cursor report, or null to use the
+	 * manager's default.
+	 */
+	private InformUser inform;
+
+	/**
+	 * Takes the results of result actions run from this cursor, or null to
+	 * discard them.
+	 */
+	private Consumer<ActionResult> results;
+
+	/**
+	 * The macro being recorded from this cursor's commands, if any.  Not
+	 * carried over to copies.
+	 */
+	private Macro.Recorder recorder;
+
+	/**
+	 * Cancels the action running from this cursor, if any.  Set and cleared by
+	 * the thread running it, read by whoever cancels it.
+	 */
+	private volatile CancellationToken running;
+
+	/**
+	 * Creates a cursor with no menus, which is done.
+	 */
+	public MenuCursor()
+	{
+		stack = new ArrayDeque<>();
+	}
+
+	/**
+	 * Creates a cursor positioned at the start menu.  A null start menu gives a
+	 * cursor that is done.
+	 */
+	public MenuCursor(Menu start)
+	{
+		this();
+
+		if (start != null)
+		{
+			stack.add(start);
+		}
+	}
+
+	private MenuCursor(MenuCursor other)
+	{
+		stack   = new ArrayDeque<>(other.stack);
+		inform  = other.inform;
+		results = other.results;
+	}
+
+	/**
+	 * Returns a cursor at the same position.  Moving either one does not move
+	 * the other.
+	 */
+	public MenuCursor copy()
+	{
+		return new MenuCursor(this);
+	}
+
+	/**
+	 * @return the name of the macro being recorded, or null if none is
+	 */
+	public String recording()
+	{
+		return recorder == null ? null : recorder.name();
+	}
+
+	Macro.Recorder recorder()
+	{
+		return recorder;
+	}
+
+	void recorder(Macro.Recorder recorder)
+	{
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Cancels the action running from this cursor, if there is one.  Safe to
+	 * call from any thread, such as a signal handler's.
+	 *
+	 * @param reason shown to the user
+	 * @return true if an action was cancelled; false if none is running, or it
+	 * had already been cancelled
+	 */
+	public boolean cancel(String reason)
+	{
+		CancellationToken token = running;
+		return token != null && token.cancel(reason);
+	}
+
+	void running(CancellationToken token)
+	{
+		running = token;
+	}
+
+	/**
+	 * Make the menu the active menu.
+	 */
+	public void push(Menu menu)
+	{
+		if (menu != null)
+		{
+			stack.add(menu);
+		}
+	}
+
+	/**
+	 * Go back to the previous menu.  Leaving the main menu leaves the menus
+	 * altogether.
+	 */
+	public void up()
+	{
+		if (stack.size() > 1)
+		{
+			stack.removeLast();
+		}
+		else
+		{
+			stack.clear();
+		}
+	}
+
+	/**
+	 * Leave the menus altogether.
+	 */
+	public void exit()
+	{
+		stack.clear();
+	}
+
+	public Menu activeMenu()
+	{
+		if (stack.isEmpty())
+		{
+			return null;
+		}
+
+		return stack.getLast();
+	}
+
+	public String activeMenuPrefix()
+	{
+		Menu menu = activeMenu();
+
+		if (menu == null)
+		{
+			return null;
+		}
+
+		return menu.code();
+	}
+
+	public int depth()
+	{
+		return stack.size();
+	}
+
+	public boolean isDone()
+	{
+		return stack.isEmpty();
+	}
+
+	public InformUser informUser()
+	{
+		return inform;
+	}
+
+	/**
+	 * Sets where async actions started from this cursor report, overriding the
+	 * manager's default.  Null restores the default.
+	 */
+	public MenuCursor informUser(InformUser inform)
+	{
+		this.inform = inform;
+		return this;
+	}
+
+	public Consumer<ActionResult> results()
+	{
+		return results;
+	}
+
+	/**
+	 * Sets what takes the results of result actions run from this cursor, such
+	 * as a {@link xivvic.console.interact.ResultRenderer}.  The handler is called
+	 * on the thread running the command, and the result is closed once it
+	 * returns.  Null, the default, discards results unread.
+	 *
+	 * See {@link xivvic.console.action.ResultAction}.
+	 */
+	public MenuCursor results(Consumer<ActionResult> results)
+	{
+		this.results = results;
+		return this;
+	}
+
+	char[] render()
+	{
+		return renderCache.render(stack);
+	}
+}
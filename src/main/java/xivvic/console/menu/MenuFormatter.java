@@ -1,47 +1,98 @@
 package xivvic.console.menu;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Deque;
 import java.util.Iterator;
-import java.util.stream.Collectors;
-
-import org.apache.commons.lang3.StringUtils;
 
 import xivvic.util.text.TextFormatter;
 
 public class MenuFormatter
 {
+	private static final int    WIDTH    = 80;
+	private static final int    SHORTCUT = 8;
+	private static final String LINE     = TextFormatter.edgedLine('*', '-', WIDTH);
 
-	private static String getMenuHeaderContent(Deque<Menu> stack)
+	private static void appendMenuHeaderContent(Deque<Menu> stack, Appendable out)
+	throws IOException
 	{
-		String content = stack.stream()
-		.map(m -> m.title())
-		.collect(Collectors.joining(" >> "));
+		boolean first = true;
+
+		for (Menu m : stack)
+		{
+			if (! first)
+			{
+				out.append(" >> ");
+			}
+
+			out.append(m.title());
+			first = false;
+		}
+	}
+
+	private static int menuHeaderLength(Deque<Menu> stack)
+	{
+		int length = 0;
+
+		for (Menu m : stack)
+		{
+			length += length == 0 ? 0 : 4;
+			length += String.valueOf(m.title()).length();
+		}
 
-		return content;
+		return length;
 	}
 
 	public static String format(Menu menu, Deque<Menu> stack)
+	{
+		StringBuilder sb = new StringBuilder();
+		format(menu, stack, sb);
+		return sb.toString();
+	}
+
+	static void format(Menu menu, Deque<Menu> stack, StringBuilder sb)
+	{
+		try
+		{
+			format(menu, stack, (Appendable) sb);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder does not throw.
+			//
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Renders the menu straight into the supplied Appendable, without building
+	 * an intermediate String.
+	 *
+	 * @param menu the menu to render, normally the last menu on the stack
+	 * @param stack the menu stack, rendered as a breadcrumb in the header
+	 * @param out destination for the rendered text
+	 */
+	public static void format(Menu menu, Deque<Menu> stack, Appendable out)
+	throws IOException
 	{
 		if (menu == null)
 		{
-			return "Menu was null";
+			out.append("Menu was null");
+			return;
 		}
 
-		int          width = 80;
-		StringBuffer    sb = new StringBuffer();
-		String  headerText = MenuFormatter.getMenuHeaderContent(stack);
-
-		String line = TextFormatter.edgedLine('*', '-', width);
-		sb.append(line);
-		sb.append("\n");
-		String box = StringUtils.leftPad(headerText, 3 + headerText.length(), ' ');
-		box = StringUtils.rightPad(box, width, ' ');
-		sb.append("*");
-		sb.append(box);
-		sb.append("*");
-		sb.append("\n");
-		sb.append(line);
-		sb.append("\n");
+		int headerLength = menuHeaderLength(stack);
+
+		out.append(LINE);
+		out.append('\n');
+		out.append('*');
+		pad(out, 3);
+		appendMenuHeaderContent(stack, out);
+		pad(out, WIDTH - 3 - headerLength);
+		out.append('*');
+		out.append('\n');
+		out.append(LINE);
+		out.append('\n');
 
 		int index = 1;
 
@@ -49,43 +100,78 @@ public class MenuFormatter
 		while (it.hasNext())
 		{
 			MenuItem item = it.next();
-			String  number = StringUtils.leftPad(Integer.toString(index), 2, ' ');
-			sb.append(number);
+			appendNumber(out, index);
 			index++;
-			sb.append(": ");
+			out.append(": ");
 			String sc = item.shortcut();
-			String text = StringUtils.rightPad(sc, 8, ' ');
-			sb.append(text);
-			sb.append(": ");
+			appendShortcut(out, sc);
+			out.append(": ");
 			if (item.is_enabled())
 			{
-				sb.append("          ");
+				out.append("          ");
 			}
 			else
 			{
-				sb.append(" disabled ");
+				out.append(" disabled ");
 			}
-			sb.append(": ");
-			sb.append(item.text());
-			sb.append("\n");
+			out.append(": ");
+			out.append(item.text());
+			out.append('\n');
 		}
 
-		String number = StringUtils.leftPad(Integer.toString(0), 2, ' ');
-		sb.append(number);
-		sb.append(": ");
-		String text = StringUtils.rightPad(null, 8, ' ');
-		sb.append(text);
-		sb.append(": ");
+		appendNumber(out, 0);
+		out.append(": ");
+		appendShortcut(out, null);
+		out.append(": ");
 
 		boolean  isSubmenu = stack.size() > 1;
 		String      upText = MenuFormatter.getUpOneText(isSubmenu);
 
-		sb.append(upText);
-		sb.append("\n");
+		out.append(upText);
+		out.append('\n');
+	}
+
+	private static void appendNumber(Appendable out, int number)
+	throws IOException
+	{
+		if (number < 10)
+		{
+			out.append(' ');
+		}
+
+		// Appending the int to a StringBuilder directly avoids a String.
+		//
+		if (out instanceof StringBuilder)
+		{
+			((StringBuilder) out).append(number);
+		}
+		else
+		{
+			out.append(Integer.toString(number));
+		}
+	}
+
+	private static void appendShortcut(Appendable out, String shortcut)
+	throws IOException
+	{
+		int length = 0;
 
-		String s = sb.toString();
+		if (shortcut != null)
+		{
+			out.append(shortcut);
+			length = shortcut.length();
+		}
 
-		return s;
+		pad(out, SHORTCUT - length);
+	}
+
+	private static void pad(Appendable out, int count)
+	throws IOException
+	{
+		for (int i = 0; i < count; i++)
+		{
+			out.append(' ');
+		}
 	}
 
 	private static String getUpOneText(boolean isSubmenu)
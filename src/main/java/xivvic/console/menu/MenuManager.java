@@ -1,31 +1,90 @@
 package xivvic.console.menu;
 
 import java.io.PrintStream;
-import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import xivvic.console.action.Action;
 import xivvic.console.action.ActionBase;
 import xivvic.console.action.ActionManager;
+import xivvic.console.action.ActionMetrics;
+import xivvic.console.action.ActionResult;
+import xivvic.console.action.CancellationToken;
+import xivvic.console.action.LazyAction;
+import xivvic.console.action.Pipeline;
+import xivvic.console.action.ResultAction;
+import xivvic.console.interact.ConsoleInformUser;
+import xivvic.console.interact.InformUser;
 import xivvic.console.interact.InputProcessor;
+import xivvic.console.interact.MessageChannel;
 import xivvic.console.interact.OpSpec;
+import xivvic.console.interact.ParsedInput;
 
 /**
- * MenuManager maintains an activation stack menus.
+ * MenuManager registers menus and their actions, and runs commands against a
+ * user's position in the menus.
+ *
+ * The menus and actions are shared.  A user's position is a {@link MenuCursor},
+ * passed with each command, so any number of cursors can use one manager at
+ * once.  The manager also keeps a cursor of its own, at the start menu, which
+ * the methods without a cursor parameter use.
+ *
+ * Actions other than navigation and async actions run on the thread that
+ * invokes the command, with a {@link CancellationToken}.  The token can be
+ * cancelled through the cursor, and is cancelled when the action's timeout
+ * passes.  See {@link #setTimeout(long)}.
  *
  * @author cturner
  */
 public class MenuManager
 {
+	private final ActionManager am;
+
 	/**
-	 * Stack of menus, starting with the main menu.  As each
-	 * sub menu is invoked, it gets pushed on the stack and becomes
-	 * the active menu.
-	 *
+	 * The cursor used by the methods that do not take one.
 	 */
-	private Deque<Menu> stack = new LinkedList<>();
-	private final ActionManager am;
+	private MenuCursor cursor = new MenuCursor();
+
+	/**
+	 * Where new cursors start.
+	 */
+	private Menu startMenu;
+
+	/**
+	 * Runs async actions unless another executor is set.  Threads are daemons, so
+	 * an action still running when the application exits does not keep it alive.
+	 */
+	private static final ExecutorService DEFAULT_ASYNC = Executors.newCachedThreadPool(r ->
+	{
+		Thread t = new Thread(r, "action-async");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private Executor   asyncExecutor = DEFAULT_ASYNC;
+	private InformUser        inform = new ConsoleInformUser();
+
+	/**
+	 * The "record" command, which is never recorded itself.
+	 */
+	private Action recordAction = null;
+
+	/**
+	 * Timeouts, in ms, by action name, and for the actions not named.  Zero
+	 * for none.
+	 */
+	private Map<String, Long> timeouts       = new ConcurrentHashMap<>();
+	private long              defaultTimeout = 0;
+	private long              grace          = Watchdog.DEFAULT_GRACE_MS;
 
 	public MenuManager(ActionManager am)
 	{
@@ -47,12 +106,12 @@ public class MenuManager
 		String name        = "exit";
 		String description = "Exit the application";
 
-		Action action = new ActionBase(name, description, true)
+		Action action = new NavigationAction(name, description, true, this)
 		{
 			@Override
-			public void internal_invoke(Object param)
+			protected void navigate(MenuCursor cursor, Object param)
 			{
-				stack.clear();
+				cursor.exit();
 			}
 		};
 
@@ -63,25 +122,158 @@ public class MenuManager
 
 		name        = "up";
 		description = "Go to a higher level menu";
-		action = new ActionBase(name, description, true)
+		action = new NavigationAction(name, description, true, this)
 		{
 			@Override
-			public void internal_invoke(Object param)
+			protected void navigate(MenuCursor cursor, Object param)
 			{
-				if (stack.size() > 1)
+				cursor.up();
+			}
+		};
+
+
+		am.register(action, null, "0");
+		am.register(action, null, "up");
+	}
+
+	/**
+	 * Adds the hidden "stats" command, which shows how many times each action
+	 * has been invoked, how many times it failed, and its latency percentiles.
+	 * See {@link ActionMetrics}.
+	 *
+	 * stats        -- show the numbers
+	 * stats on     -- start recording
+	 * stats off    -- stop recording
+	 * stats reset  -- clear the numbers
+	 * stats jmx    -- publish the numbers as MBeans
+	 */
+	public void addMetricsActions()
+	{
+		String name        = "stats";
+		String description = "Show action invocation counts and latencies";
+
+		Action action = new ActionBase(name, description, true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				String option = param == null ? "" : param.toString().trim().toLowerCase(Locale.ROOT);
+
+				switch (option)
 				{
-					popMenuStack();
+				case "on":
+					ActionMetrics.setEnabled(true);
+					System.out.println("Recording action metrics.");
+					break;
+				case "off":
+					ActionMetrics.setEnabled(false);
+					System.out.println("Stopped recording action metrics.");
+					break;
+				case "reset":
+					ActionMetrics.reset();
+					System.out.println("Action metrics cleared.");
+					break;
+				case "jmx":
+					ActionMetrics.registerMBeans();
+					System.out.println("Action metrics registered under " + ActionMetrics.JMX_DOMAIN + ".");
+					break;
+				default:
+					System.out.print(ActionMetrics.report());
+					break;
 				}
-				else
+			}
+		};
+
+		am.register(action, null, "metrics");
+	}
+
+	/**
+	 * Adds the hidden "record" command, which records the commands a user
+	 * runs as a macro.  See {@link Macro}.
+	 *
+	 * record name [samples]  -- start recording.  Commands still run as they are
+	 *                           recorded, with $1.. taken from the samples.
+	 * record end             -- stop, and add the macro as a global command
+	 * record cancel          -- stop, discarding what was recorded
+	 *
+	 * A macro runs the recorded actions and menu moves directly, without
+	 * parsing or resolving its commands again.  Each cursor records on its
+	 * own; the macros are shared.
+	 */
+	public void addMacroActions()
+	{
+		String name        = "record";
+		String description = "Record commands as a macro";
+
+		recordAction = new NavigationAction(name, description, true, this)
+		{
+			@Override
+			protected void navigate(MenuCursor cursor, Object param)
+			{
+				String[] words = Macro.words(param == null ? null : param.toString());
+				String  option = words.length == 0 ? "" : words[0];
+
+				switch (option)
 				{
-					stack.clear();
+				case "":
+					String active = cursor.recording();
+					System.out.println(active == null ? "Not recording." : "Recording macro [" + active + "].");
+					break;
+				case "end":
+					endRecording(cursor);
+					break;
+				case "cancel":
+					cursor.recorder(null);
+					System.out.println("Recording discarded.");
+					break;
+				default:
+					startRecording(cursor, option, param.toString().trim().substring(option.length()));
+					break;
 				}
 			}
 		};
 
+		am.register(recordAction, ActionManager.GLOBAL_CONTEXT);
+	}
 
-		am.register(action, null, "0");
-		am.register(action, null, "up");
+	private void startRecording(MenuCursor cursor, String name, String samples)
+	{
+		Action existing = am.command(ActionManager.GLOBAL_CONTEXT, name);
+
+		if (cursor.recorder() != null)
+		{
+			System.out.println("Already recording macro [" + cursor.recording() + "].");
+		}
+		else if (name.contains(ActionManager.DELIMITER))
+		{
+			System.out.println("Macro name [" + name + "] may not contain [" + ActionManager.DELIMITER + "].");
+		}
+		else if (existing != null && ! (existing instanceof Macro))
+		{
+			System.out.println("Macro name [" + name + "] is already a command.");
+		}
+		else
+		{
+			cursor.recorder(new Macro.Recorder(name, samples));
+			System.out.println("Recording macro [" + name + "].  Enter \"record end\" to save it.");
+		}
+	}
+
+	private void endRecording(MenuCursor cursor)
+	{
+		Macro.Recorder recorder = cursor.recorder();
+
+		if (recorder == null)
+		{
+			System.out.println("Not recording.");
+			return;
+		}
+
+		cursor.recorder(null);
+
+		Macro macro = recorder.build(this);
+		am.register(macro, ActionManager.GLOBAL_CONTEXT);
+		System.out.println("Saved macro [" + macro.name() + "] of [" + macro.size() + "] commands.");
 	}
 
 	/**
@@ -104,6 +296,8 @@ public class MenuManager
 	 * menu.code x menuitem.index -> menuitem
 	 * menu.code x menuitem.code  -> menuitem
 	 *
+	 * The menu can no longer change once added, see {@link Menu}.
+	 *
 	 * @param menu the menu that is to be handled by this manager.
 	 */
 	public void addMenu(Menu menu)
@@ -115,18 +309,74 @@ public class MenuManager
 			return;
 		}
 
+		menu.freeze();
+
 		String left = menu.code();
-		int index = 0;
-		Iterator<MenuItem> it = menu.iterator();
-		while (it.hasNext())
+
+		am.registerAll(registry ->
 		{
-			MenuItem item = it.next();
+			int index = 0;
+			Iterator<MenuItem> it = menu.iterator();
+			while (it.hasNext())
+			{
+				MenuItem item = it.next();
 
-			index++;
+				index++;
 
-			am.register(item.action(), left, item.shortcut());
-			am.register(item.action(), left, Integer.toString(index));
-		}
+				registry.register(item.action(), left, item.shortcut());
+				registry.register(item.action(), left, Integer.toString(index));
+			}
+		});
+	}
+
+	/**
+	 * Tokenize and resolve a line of input against the active menu.  The result
+	 * can be checked with {@link ParsedInput#isValid()} and then passed to
+	 * {@link #invoke(ParsedInput)} without parsing the input again.
+	 *
+	 * @param input text string representing the user's input at the menu prompt.
+	 * @return the parsed input, never null
+	 */
+	public ParsedInput parse(String input)
+	{
+		return parse(cursor, input);
+	}
+
+	/**
+	 * Tokenize and resolve a line of input against the cursor's active menu.
+	 *
+	 * @param cursor the position of the user who entered the input
+	 * @param input text string representing the user's input at the menu prompt.
+	 * @return the parsed input, never null
+	 */
+	public ParsedInput parse(MenuCursor cursor, String input)
+	{
+		String context = cursor.activeMenuPrefix();
+		OpSpec[]   ops = InputProcessor.processInput(context, input, am);
+
+		return new ParsedInput(input, ops);
+	}
+
+	/**
+	 * Complete a partial command against the cursor's active menu, for tab
+	 * completion.  See {@link ActionManager#complete(CharSequence, CharSequence)}.
+	 *
+	 * @return the completions, possibly empty
+	 */
+	public List<String> complete(MenuCursor cursor, String partial)
+	{
+		return am.complete(cursor.activeMenuPrefix(), partial);
+	}
+
+	/**
+	 * Suggest commands for input that did not resolve against the cursor's
+	 * active menu.  See {@link InputProcessor#suggest(String, String, ActionManager)}.
+	 *
+	 * @return command names, closest first, possibly empty
+	 */
+	public List<String> suggest(MenuCursor cursor, String input)
+	{
+		return InputProcessor.suggest(cursor.activeMenuPrefix(), input, am);
 	}
 
 	/** Invoke a menu choice
@@ -135,11 +385,39 @@ public class MenuManager
 	 */
 	public void invoke(String input)
 	{
-		Menu   active = activeMenu();
-		String context = active.code();
-		OpSpec[]   ops = InputProcessor.processInput(context, input, am);
+		invoke(cursor, parse(cursor, input));
+	}
+
+	/** Invoke a menu choice that has already been parsed.
+	 *
+	 * @param parsed the user's input, as returned by {@link #parse(String)}
+	 */
+	public void invoke(ParsedInput parsed)
+	{
+		invoke(cursor, parsed);
+	}
+
+	/** Invoke a menu choice on behalf of the cursor's user.
+	 *
+	 * @param cursor the position of the user who entered the input
+	 * @param input text string representing the user's input at the menu prompt.
+	 */
+	public void invoke(MenuCursor cursor, String input)
+	{
+		invoke(cursor, parse(cursor, input));
+	}
+
+	/** Invoke a menu choice that has already been parsed, on behalf of the
+	 * cursor's user.  Navigation actions move the cursor.
+	 *
+	 * @param cursor the position of the user who entered the input
+	 * @param parsed the user's input, as returned by {@link #parse(MenuCursor, String)}
+	 */
+	public void invoke(MenuCursor cursor, ParsedInput parsed)
+	{
+		Objects.requireNonNull(cursor);
 
-		for (OpSpec cmd : ops)
+		for (OpSpec cmd : parsed.ops())
 		{
 			Action action = cmd.action();
 
@@ -148,120 +426,313 @@ public class MenuManager
 				continue;
 			}
 
-			String param = cmd.parameter();
-			action.invoke(param);
+			String         param = cmd.parameter();
+			Macro.Recorder macro = cursor.recorder();
+
+			if (macro != null && action != recordAction)
+			{
+				param = macro.record(action, param);
+			}
+
+			run(cursor, action, param);
 		}
 	}
 
-
-	private Action locateAction(String token)
+	/**
+	 * Runs a resolved action on behalf of the cursor's user.  Macros replay
+	 * their steps through here.
+	 *
+	 * Result actions run on the calling thread, and their results go to the
+	 * cursor's handler.  See {@link MenuCursor#results(Consumer)}.
+	 */
+	void run(MenuCursor cursor, Action action, String param)
 	{
-		// First attempt to match input is against the
-		// current menu.
-		//
-		Menu menu = activeMenu();
-		if (menu == null)
+		ResultAction producer;
+
+		if (action instanceof NavigationAction)
 		{
-			return null;
+			((NavigationAction) action).invoke(cursor, param);
 		}
-
-		Action action = am.command(menu.code(), token);
-
-		if (action != null)
+		else if ((producer = resultAction(action)) != null)
+		{
+			invokeCancellable(cursor, action, () -> invokeResult(cursor, producer, param));
+		}
+		else if (action.isAsync())
+		{
+			invokeAsync(cursor, action, param);
+		}
+		else
 		{
-			return action;
+			invokeCancellable(cursor, action, () -> invokeRecorded(action, param));
 		}
+	}
 
-		// If the current menu fails, try looking up the token in the
-		// global context.
-		//
-		action = am.command(null, token);
-		return action;
+	/**
+	 * Sets the time an action may run before it is cancelled, unless it has a
+	 * timeout of its own.  Zero, the default, for none.
+	 */
+	public void setTimeout(long millis)
+	{
+		defaultTimeout = Math.max(0, millis);
 	}
 
-	void push(Menu menu)
+	/**
+	 * Sets the time the named action may run before it is cancelled.  Zero for
+	 * none, whatever the default.
+	 */
+	public void setTimeout(String action, long millis)
 	{
-		stack.add(menu);
+		timeouts.put(action, Math.max(0, millis));
 	}
 
+	/**
+	 * Sets how long an action may go on after it has been cancelled before the
+	 * watchdog reports it on the ERROR channel.
+	 */
+	public void setCancellationGrace(long millis)
+	{
+		grace = Math.max(0, millis);
+	}
 
-	void popMenuStack()
+	// Runs the invocation with a token the cursor can cancel, under the
+	// watchdog.  A cancelled action is reported on the STATUS channel, and
+	// what it throws once cancelled is taken to be the way it stopped.
+	//
+	private void invokeCancellable(MenuCursor cursor, Action action, Runnable invocation)
 	{
-		if (stack.size() > 0)
+		String             name = action.name();
+		long            timeout = timeouts.getOrDefault(name, defaultTimeout);
+		InformUser         sink = cursor.informUser() == null ? inform : cursor.informUser();
+		CancellationToken token = timeout > 0 ? new CancellationToken(timeout, TimeUnit.MILLISECONDS) : new CancellationToken();
+
+		Watchdog.Watch    watch = Watchdog.INSTANCE.watch(name, token, Thread.currentThread(), grace, sink);
+
+		cursor.running(token);
+
+		try
 		{
-			stack.removeLast();
+			token.run(invocation);
+		}
+		catch (RuntimeException e)
+		{
+			if (token.reason() == null)
+			{
+				throw e;
+			}
+		}
+		finally
+		{
+			cursor.running(null);
+			watch.close();
+		}
+
+		if (token.reason() != null)
+		{
+			sink.userMessage(MessageChannel.STATUS, name, "Cancelled: " + token.reason());
 		}
 	}
 
-	public String activeMenuPrefix()
+	// The action, or the action a lazy one stands for, if it returns a result.
+	// A disabled lazy action is not built.
+	//
+	private static ResultAction resultAction(Action action)
 	{
-		Menu menu = activeMenu();
+		if (action instanceof LazyAction && action.is_enabled())
+		{
+			action = ((LazyAction) action).get();
+		}
 
-		if (menu == null)
+		return action instanceof ResultAction ? (ResultAction) action : null;
+	}
+
+	private static void invokeResult(MenuCursor cursor, ResultAction action, String param)
+	{
+		if (! action.is_enabled())
 		{
-			return null;
+			return;
+		}
+
+		long         start = ActionMetrics.start();
+		boolean       fail = true;
+		ActionResult result;
+
+		try
+		{
+			result = action.result(param);
+			fail   = false;
+		}
+		finally
+		{
+			ActionMetrics.record(action.name(), start, fail);
 		}
 
-		return menu.code();
+		Consumer<ActionResult> handler = cursor.results();
+
+		try
+		{
+			if (handler != null)
+			{
+				handler.accept(result);
+			}
+		}
+		finally
+		{
+			result.close();
+		}
 	}
 
-	private Menu activeMenu()
+	// ActionBase and LazyAction record their own invocations, and a Pipeline
+	// records each of its stages; other actions are recorded here.
+	//
+	private static boolean recordsItself(Action action)
 	{
-		if (stack.isEmpty())
+		return action instanceof ActionBase || action instanceof LazyAction || action instanceof Pipeline;
+	}
+
+	private static void invokeRecorded(Action action, String param)
+	{
+		if (recordsItself(action))
 		{
-			return null;
+			action.invoke(param);
+			return;
 		}
 
-		return stack.getLast();
+		long   start = ActionMetrics.start();
+		boolean fail = true;
+
+		try
+		{
+			action.invoke(param);
+			fail = false;
+		}
+		finally
+		{
+			ActionMetrics.record(action.name(), start, fail);
+		}
 	}
 
-	public boolean isDone()
+	/**
+	 * Sets the executor that runs actions declaring themselves async.
+	 */
+	public void setAsyncExecutor(Executor executor)
 	{
-		return stack.isEmpty();
+		asyncExecutor = Objects.requireNonNull(executor);
 	}
 
 	/**
-	 * Determine if a menu input is valid.  Note that in the case of
-	 * a compound input (i.e. "1 ## 4") then only the first command is
-	 * validated.
-	 *
-	 * @param input text to be validated
-	 * @return true if it represents a good command for this MenuManager
+	 * Sets where the completion of async actions is reported.
 	 */
-	public boolean isValidSelection(String input)
+	public void setInformUser(InformUser inform)
 	{
-		Menu   active = activeMenu();
-		String context = active.code();
+		this.inform = Objects.requireNonNull(inform);
+	}
 
-		OpSpec[] uio = InputProcessor.processInput(context, input, am);
+	// Starts the action and returns at once.  Completion is reported on the
+	// STATUS channel, failure on the ERROR channel.
+	//
+	private void invokeAsync(MenuCursor cursor, Action action, String param)
+	{
+		final String      name = action.name();
+		final long       start = System.nanoTime();
+		final InformUser  sink = cursor.informUser() == null ? inform : cursor.informUser();
+		final long      metric = recordsItself(action) ? ActionMetrics.DISABLED : ActionMetrics.start();
 
-		if (uio.length == 0)
-		{
-			return false;
-		}
+		sink.userMessage(MessageChannel.STATUS, name, "Started");
 
-		OpSpec cmd = uio[0];
-		if (cmd == null)
+		action.invokeAsync(param, asyncExecutor).whenComplete((v, t) ->
 		{
-			return false;
-		}
+			long ms = (System.nanoTime() - start) / 1000000;
+
+			ActionMetrics.record(name, metric, t != null);
+
+			if (t == null)
+			{
+				sink.userMessage(MessageChannel.STATUS, name, "Completed in " + ms + " ms");
+			}
+			else
+			{
+				Throwable cause = t.getCause() == null ? t : t.getCause();
+				sink.userMessage(MessageChannel.ERROR, name, "Failed after " + ms + " ms: " + cause);
+			}
+		});
+	}
+
+	/**
+	 * Returns a manager that shares this manager's menus and actions, with its own
+	 * copy of the current cursor.  Navigating in the fork does not affect this
+	 * manager, so forks can run commands on other threads.
+	 */
+	public MenuManager fork()
+	{
+		MenuManager copy = new MenuManager(am);
+		copy.cursor         = cursor.copy();
+		copy.startMenu      = startMenu;
+		copy.asyncExecutor  = asyncExecutor;
+		copy.inform         = inform;
+		copy.recordAction   = recordAction;
+		copy.timeouts       = timeouts;
+		copy.defaultTimeout = defaultTimeout;
+		copy.grace          = grace;
+
+		return copy;
+	}
+
+	/**
+	 * Returns a new cursor at the start menu.
+	 */
+	public MenuCursor newCursor()
+	{
+		return new MenuCursor(startMenu);
+	}
 
-		Action action = locateAction(cmd.text());
-		cmd.action(action);
+	/**
+	 * Returns the cursor used by the methods that do not take one.
+	 */
+	public MenuCursor cursor()
+	{
+		return cursor;
+	}
 
-		return action != null;
+	public String activeMenuPrefix()
+	{
+		return cursor.activeMenuPrefix();
+	}
+
+	public boolean isDone()
+	{
+		return cursor.isDone();
+	}
+
+	/**
+	 * Determine if a menu input is valid.  Callers that go on to invoke the input
+	 * should use {@link #parse(String)} instead, to avoid parsing it twice.
+	 *
+	 * @param input text to be validated
+	 * @return true if it represents a good command for this MenuManager
+	 */
+	public boolean isValidSelection(String input)
+	{
+		return parse(input).isValid();
 	}
 
 	public void display(PrintStream out)
 	{
-		Menu menu = activeMenu();
-		String   s = MenuFormatter.format(menu, stack);
+		display(cursor, out);
+	}
 
-		out.println(s);
+	/**
+	 * Prints the cursor's active menu.  The cached rendering is written to the
+	 * stream as it is, without making a String of it.
+	 */
+	public void display(MenuCursor cursor, PrintStream out)
+	{
+		out.print(cursor.render());
+		out.println();
 	}
 
 	/**
-	 * Make the specified menu the first and only menu on the stack.
+	 * Make the specified menu the first and only menu on this manager's cursor,
+	 * and the menu new cursors start at.
 	 * Nop if the menu is null.
 	 *
 	 * @param menu
@@ -275,7 +746,8 @@ public class MenuManager
 
 		addMenu(menu);
 
-		stack.clear();
-		push(menu);
+		startMenu = menu;
+		cursor.exit();
+		cursor.push(menu);
 	}
 }
@@ -0,0 +1,91 @@
+package xivvic.console.menu;
+
+import java.util.Deque;
+import java.util.Iterator;
+
+import xivvic.console.action.ActionBase;
+
+/**
+ * Holds the last rendering of a menu stack so the screen is only rebuilt when
+ * something shown on it changes.
+ *
+ * A rendering is reused while the stack holds the same menus and the stamp is
+ * unchanged.  The stamp adds the version of every menu on the stack to the
+ * enablement version of {@link ActionBase}.  Each counter only grows, so any
+ * change moves the sum.  Actions that do not extend ActionBase do not bump the
+ * enablement version; toggling them will not invalidate the cache.
+ *
+ * The rendering is kept as characters, which a PrintStream writes as they are,
+ * without a String made of them.
+ *
+ * Not thread safe.  Each menu stack should have its own cache.
+ */
+class MenuRenderCache
+{
+	private final StringBuilder buffer = new StringBuilder();
+
+	private Menu[] menus = new Menu[0];
+	private long   stamp = -1;
+	private char[] text;
+
+	/**
+	 * @return the rendering of the stack's last menu.  The array is shared with
+	 * the cache, and must not be changed.
+	 */
+	char[] render(Deque<Menu> stack)
+	{
+		if (stack.isEmpty())
+		{
+			return MenuFormatter.format(null, stack).toCharArray();
+		}
+
+		long current = stamp(stack);
+
+		if (text != null && current == stamp && sameMenus(stack))
+		{
+			return text;
+		}
+
+		buffer.setLength(0);
+		MenuFormatter.format(stack.getLast(), stack, buffer);
+
+		menus = stack.toArray(new Menu[stack.size()]);
+		stamp = current;
+		text  = new char[buffer.length()];
+
+		buffer.getChars(0, text.length, text, 0);
+
+		return text;
+	}
+
+	private static long stamp(Deque<Menu> stack)
+	{
+		long sum = ActionBase.stateVersion();
+
+		for (Menu m : stack)
+		{
+			sum += m.version();
+		}
+
+		return sum;
+	}
+
+	private boolean sameMenus(Deque<Menu> stack)
+	{
+		if (stack.size() != menus.length)
+		{
+			return false;
+		}
+
+		Iterator<Menu> it = stack.iterator();
+		for (Menu m : menus)
+		{
+			if (it.next() != m)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
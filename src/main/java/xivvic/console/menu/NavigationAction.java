@@ -0,0 +1,94 @@
+package xivvic.console.menu;
+
+import xivvic.console.action.ActionBase;
+import xivvic.console.action.ActionMetrics;
+
+/**
+ * NavigationAction is an action that moves a user around the menus, such as
+ * choosing a submenu or going up a level.
+ *
+ * The action holds no navigation state.  {@link MenuManager} passes the cursor
+ * of the user who chose the action, so one registered instance serves every
+ * cursor.  Navigation actions always run on the thread that chose them.
+ *
+ * Invoked directly, through {@link #invoke(Object)}, the action moves the
+ * cursor of the manager it was made for.  See {@link MenuManager#cursor()}.
+ *
+ * Made to be subclassed.
+ */
+public abstract class NavigationAction
+extends ActionBase
+{
+	private final MenuManager manager;
+
+	/**
+	 * An action that can only be invoked with a cursor.
+	 */
+	public NavigationAction(String name, String description, boolean enabled)
+	{
+		this(name, description, enabled, null);
+	}
+
+	/**
+	 * @param manager whose cursor a direct invocation moves; may be null
+	 */
+	public NavigationAction(String name, String description, boolean enabled, MenuManager manager)
+	{
+		super(name, description, enabled);
+		this.manager = manager;
+	}
+
+	/**
+	 * Perform the action on the cursor, if the action is enabled.
+	 *
+	 * @param cursor the position of the user who chose the action
+	 * @param param the action parameter
+	 */
+	public final void invoke(MenuCursor cursor, Object param)
+	{
+		if (! is_enabled())
+		{
+			return;
+		}
+
+		long   start = ActionMetrics.start();
+		boolean fail = true;
+
+		try
+		{
+			navigate(cursor, param);
+			fail = false;
+		}
+		finally
+		{
+			ActionMetrics.record(name(), start, fail);
+		}
+	}
+
+	/**
+	 * This is the method that subclasses need to implement.  It is called
+	 * by {@link #invoke(MenuCursor, Object)} after checking whether or not the
+	 * action is enabled.
+	 *
+	 * @param cursor the position of the user who chose the action
+	 * @param param the action parameter
+	 */
+	protected abstract void navigate(MenuCursor cursor, Object param);
+
+	/**
+	 * Navigates the manager's own cursor.
+	 *
+	 * @throws IllegalStateException if the action was made without a manager
+	 */
+	@Override
+	protected final void internal_invoke(Object param)
+	{
+		if (manager == null)
+		{
+			String msg = "Navigation action [" + name() + "] needs a menu cursor; invoke it through the MenuManager";
+			throw new IllegalStateException(msg);
+		}
+
+		navigate(manager.cursor(), param);
+	}
+}
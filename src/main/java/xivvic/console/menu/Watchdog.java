@@ -0,0 +1,151 @@
+package xivvic.console.menu;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import xivvic.console.action.CancellationToken;
+import xivvic.console.interact.InformUser;
+import xivvic.console.interact.MessageChannel;
+
+/**
+ * Watchdog keeps an eye on the actions the menu managers are running.
+ *
+ * A single daemon thread wakes every {@link #TICK_MS} ms.  It cancels the
+ * tokens of actions whose deadline has passed, which interrupts them, and
+ * reports, once, each action still running a grace period after it was
+ * cancelled, with the place it is stuck at.  An action waiting for the user,
+ * with interrupts held back, is not reported while it waits.
+ *
+ * The thread is started by the first watch.  Watching an action costs a set
+ * insertion and removal.
+ *
+ * @Threadsafe
+ */
+final class Watchdog
+{
+	static final long TICK_MS          = 100;
+	static final long DEFAULT_GRACE_MS = 2000;
+
+	static final Watchdog INSTANCE = new Watchdog();
+
+	private final Set<Watch> running = ConcurrentHashMap.newKeySet();
+
+	private volatile Thread thread = null;
+
+	private Watchdog() {}
+
+	/**
+	 * Watches the action the thread is about to run.  Close the watch when it
+	 * completes.
+	 *
+	 * @param grace how long, in ms, the action may go on after it is cancelled
+	 * before it is reported
+	 * @param sink where the report goes
+	 */
+	Watch watch(String name, CancellationToken token, Thread runner, long grace, InformUser sink)
+	{
+		Watch watch = new Watch(name, token, runner, TimeUnit.MILLISECONDS.toNanos(grace), sink);
+		running.add(watch);
+
+		if (thread == null)
+		{
+			start();
+		}
+
+		return watch;
+	}
+
+	private synchronized void start()
+	{
+		if (thread != null)
+		{
+			return;
+		}
+
+		Thread t = new Thread(this::loop, "action-watchdog");
+		t.setDaemon(true);
+		t.start();
+
+		thread = t;
+	}
+
+	private void loop()
+	{
+		while (true)
+		{
+			try
+			{
+				Thread.sleep(TICK_MS);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+
+			for (Watch watch : running)
+			{
+				watch.check();
+			}
+		}
+	}
+
+	/**
+	 * One running action.
+	 */
+	final class Watch
+	implements AutoCloseable
+	{
+		private final String            name;
+		private final CancellationToken token;
+		private final Thread            runner;
+		private final long              grace;
+		private final InformUser        sink;
+
+		// Watchdog thread only.
+		//
+		private boolean reported = false;
+
+		private Watch(String name, CancellationToken token, Thread runner, long grace, InformUser sink)
+		{
+			this.name   = name;
+			this.token  = token;
+			this.runner = runner;
+			this.grace  = grace;
+			this.sink   = sink;
+		}
+
+		private void check()
+		{
+			if (reported || ! token.isCancelled() || token.isHoldingInterrupts())
+			{
+				return;
+			}
+
+			long elapsed = System.nanoTime() - token.cancelledAt();
+
+			if (elapsed < grace)
+			{
+				return;
+			}
+
+			long                   ms = TimeUnit.NANOSECONDS.toMillis(elapsed);
+			StackTraceElement[] stack = runner.getStackTrace();
+			String                 at = stack.length == 0 ? "" : " at " + stack[0];
+
+			// The action may have completed since it was checked.
+			//
+			if (running.contains(this))
+			{
+				reported = true;
+				sink.userMessage(MessageChannel.ERROR, name, "Still running [" + ms + "] ms after it was cancelled (" + token.reason() + ")" + at);
+			}
+		}
+
+		@Override
+		public void close()
+		{
+			running.remove(this);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package xivvic.console.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+
+/**
+ * Installs handlers for operating system signals.
+ *
+ * Signal handling is not part of the Java API.  The JDK's sun.misc.Signal is
+ * looked up reflectively, so this compiles and runs on any JVM; where it is
+ * missing, or the signal cannot be handled, nothing is installed and the
+ * signal keeps its default behaviour.
+ */
+public final class Signals
+{
+	// Static only class.
+	//
+	private Signals() {}
+
+	/**
+	 * Runs the handler on each SIGINT (Ctrl-C) instead of ending the process.
+	 * The handler runs on a thread of its own, and should return quickly.
+	 *
+	 * @return true if the handler was installed
+	 */
+	public static boolean onInterrupt(Runnable handler)
+	{
+		return handle("INT", handler);
+	}
+
+	/**
+	 * @param name the signal name, without the SIG prefix
+	 * @return true if the handler was installed
+	 */
+	public static boolean handle(String name, Runnable handler)
+	{
+		Objects.requireNonNull(handler);
+
+		try
+		{
+			Class<?> signalClass  = Class.forName("sun.misc.Signal");
+			Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+
+			Constructor<?> create = signalClass.getConstructor(String.class);
+			Method         handle = signalClass.getMethod("handle", signalClass, handlerClass);
+
+			InvocationHandler calls = (proxy, method, args) ->
+			{
+				switch (method.getName())
+				{
+				case "handle":
+					handler.run();
+					return null;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				default:
+					return "SignalHandler(" + name + ")";
+				}
+			};
+
+			Object proxy = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[] { handlerClass }, calls);
+
+			handle.invoke(null, create.newInstance(name), proxy);
+			return true;
+		}
+		catch (ReflectiveOperationException | LinkageError | RuntimeException e)
+		{
+			// No sun.misc.Signal, or the signal is reserved by the JVM.
+			//
+			return false;
+		}
+	}
+}
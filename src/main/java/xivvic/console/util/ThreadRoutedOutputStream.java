@@ -0,0 +1,77 @@
+package xivvic.console.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * An OutputStream that sends each thread's output to the stream bound to that
+ * thread, or to a fallback stream for threads with no binding.
+ *
+ * Installed behind System.out, it lets work running on several threads at once
+ * keep its console output apart, for example to print it in order afterwards.
+ * A PrintStream writing to this stream should be created with autoflush on, so
+ * text is pushed through while the writing thread still holds the PrintStream.
+ */
+public class ThreadRoutedOutputStream
+extends OutputStream
+{
+	private final ThreadLocal<OutputStream> route = new ThreadLocal<>();
+	private final OutputStream fallback;
+
+	public ThreadRoutedOutputStream(OutputStream fallback)
+	{
+		this.fallback = Objects.requireNonNull(fallback);
+	}
+
+	/**
+	 * Send output written by the current thread to the target until {@link #unbind()}.
+	 */
+	public void bind(OutputStream target)
+	{
+		route.set(Objects.requireNonNull(target));
+	}
+
+	public void unbind()
+	{
+		route.remove();
+	}
+
+	@Override
+	public void write(int b)
+	throws IOException
+	{
+		target().write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len)
+	throws IOException
+	{
+		target().write(b, off, len);
+	}
+
+	@Override
+	public void flush()
+	throws IOException
+	{
+		target().flush();
+	}
+
+	/**
+	 * Flushes the fallback stream.  Bound streams belong to their owners and are
+	 * not closed.
+	 */
+	@Override
+	public void close()
+	throws IOException
+	{
+		fallback.flush();
+	}
+
+	private OutputStream target()
+	{
+		OutputStream os = route.get();
+		return os == null ? fallback : os;
+	}
+}
@@ -0,0 +1,163 @@
+package xivvic.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import xivvic.console.action.ActionBase;
+import xivvic.console.action.ActionManager;
+import xivvic.console.menu.Menu;
+import xivvic.console.menu.MenuManager;
+
+public class ConsoleServerTest
+{
+	private ConsoleServer subject;
+
+	@Before
+	public void before()
+	throws IOException
+	{
+		ActionManager am = new ActionManager();
+		MenuManager   mm = new MenuManager(am);
+		Menu        main = new Menu("Main", "main", mm);
+		Menu         sub = new Menu("Sub", "sub", mm);
+
+		sub.addItem("Record", "rec", new ActionBase("record", "Print the parameter", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				System.out.println("recorded " + param);
+			}
+		});
+
+		main.addItem(sub);
+		mm.addCoreActions();
+		mm.addStartMenu(main);
+
+		Application app = new Application(mm, am);
+		subject = new ConsoleServer(app, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		subject.start();
+	}
+
+	@After
+	public void after()
+	throws IOException
+	{
+		subject.close();
+	}
+
+	@Test
+	public void onSessions_withDifferentNavigation_thenEachHasItsOwnStack()
+	throws IOException
+	{
+		// Arrange
+		//
+		try (Socket a = connect(); Socket b = connect())
+		{
+			// Act
+			//
+			send(a, "sub\nrec one\nquit\n");
+			send(b, "rec two\nquit\n");
+
+			String outA = readAll(a);
+			String outB = readAll(b);
+
+			// Assert
+			//
+			assertTrue(outA, outA.contains("Main >> Sub"));
+			assertTrue(outA, outA.contains("recorded one"));
+			assertFalse(outA, outA.contains("two"));
+
+			assertTrue(outB, outB.contains("Input [rec two] not recognized"));
+			assertFalse(outB, outB.contains("recorded"));
+		}
+	}
+
+	@Test
+	public void onClose_withConnectedSession_thenSessionEnds()
+	throws IOException
+	{
+		// Arrange
+		//
+		try (Socket a = connect())
+		{
+			send(a, "sub\n");
+			readUntil(a, "Main >> Sub");
+
+			// Act
+			//
+			subject.close();
+
+			// Assert
+			//
+			assertTrue(readAll(a).endsWith("Up to previous menu\n\n"));
+			assertEquals(0, subject.sessions());
+		}
+	}
+
+	private Socket connect()
+	throws IOException
+	{
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), subject.port());
+		socket.setSoTimeout(10000);
+		return socket;
+	}
+
+	private static void send(Socket socket, String text)
+	throws IOException
+	{
+		OutputStream os = socket.getOutputStream();
+		os.write(text.getBytes(StandardCharsets.UTF_8));
+		os.flush();
+	}
+
+	private static void readUntil(Socket socket, String text)
+	throws IOException
+	{
+		InputStream            is = socket.getInputStream();
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		int                     b;
+
+		while ((b = is.read()) >= 0)
+		{
+			buf.write(b);
+
+			if (new String(buf.toByteArray(), StandardCharsets.UTF_8).endsWith(text))
+			{
+				return;
+			}
+		}
+
+		throw new AssertionError("Did not see [" + text + "] in " + buf);
+	}
+
+	private static String readAll(Socket socket)
+	throws IOException
+	{
+		InputStream            is = socket.getInputStream();
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		byte[]              chunk = new byte[4096];
+		int                     n;
+
+		while ((n = is.read(chunk)) >= 0)
+		{
+			buf.write(chunk, 0, n);
+		}
+
+		return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
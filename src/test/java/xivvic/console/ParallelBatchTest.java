@@ -0,0 +1,195 @@
+package xivvic.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import xivvic.console.action.ActionBase;
+import xivvic.console.action.ActionManager;
+import xivvic.console.action.BatchAction;
+import xivvic.console.menu.Menu;
+import xivvic.console.menu.MenuManager;
+
+public class ParallelBatchTest
+{
+	private MenuManager           mm;
+	private ByteArrayOutputStream buffer;
+	private PrintStream           out;
+
+	@Before
+	public void before()
+	{
+		mm = new MenuManager(new ActionManager());
+
+		Menu main = new Menu("Main", "main", mm);
+		Menu  sub = new Menu("Sub", "sub", mm);
+
+		buffer = new ByteArrayOutputStream();
+		out    = new PrintStream(buffer, true);
+
+		sub.addItem("Record", "rec", new ActionBase("record", "Print the parameter", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				System.out.println("recorded " + param);
+			}
+		});
+
+		main.addItem(sub);
+		mm.addCoreActions();
+		mm.addStartMenu(main);
+
+		// Later segments finish first.
+		//
+		mm.addHiddenAction("wait", new ActionBase("wait", "Sleep, then print the parameter", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				try
+				{
+					Thread.sleep(Long.parseLong(param.toString()));
+				}
+				catch (InterruptedException e)
+				{
+					throw new IllegalStateException(e);
+				}
+
+				System.out.println("waited " + param);
+			}
+		});
+
+		mm.addHiddenAction("fail", new ActionBase("fail", "Throw", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				System.out.println("failing");
+				throw new IllegalStateException("boom");
+			}
+		});
+
+		mm.addHiddenAction("later", new ActionBase("later", "Run async", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				System.out.println("ran later");
+			}
+		}.async(true));
+	}
+
+	@Test
+	public void onClose_withSegmentsFinishingOutOfOrder_thenOutputInScriptOrder()
+	{
+		// Arrange
+		//
+		ParallelBatch subject = new ParallelBatch(mm, new BatchAction(new String[0]), out, 4);
+
+		// Act
+		//
+		subject.submit("wait 300");
+		subject.submit("wait 200");
+		subject.submit("wait 100");
+		subject.submit("wait 0");
+		subject.close();
+
+		// Assert
+		//
+		String expected = "Batch command: [wait 300]\nwaited 300\n"
+		                + "Batch command: [wait 200]\nwaited 200\n"
+		                + "Batch command: [wait 100]\nwaited 100\n"
+		                + "Batch command: [wait 0]\nwaited 0\n";
+
+		assertEquals(expected, text());
+		assertEquals(4, subject.submitted());
+		assertEquals(0, subject.failed());
+	}
+
+	@Test
+	public void onSubmit_withNavigation_thenEachSegmentHasItsOwnCursor()
+	{
+		// Arrange
+		//
+		mm.invoke("sub");
+		ParallelBatch subject = new ParallelBatch(mm, new BatchAction(new String[0]), out, 1);
+
+		// Act
+		//
+		subject.submit("up");
+		subject.submit("rec 2");
+		subject.submit("up");
+		subject.submit("rec 4");
+		subject.close();
+
+		// Assert
+		//
+		String text = text();
+
+		assertTrue(text, text.contains("recorded 2"));
+		assertTrue(text, text.contains("recorded 4"));
+		assertEquals("sub", mm.activeMenuPrefix());
+		assertEquals(0, subject.failed());
+	}
+
+	@Test
+	public void onClose_withFailingSegment_thenReportAfterItsOutput()
+	{
+		// Arrange
+		//
+		ParallelBatch subject = new ParallelBatch(mm, new BatchAction(new String[0]), out, 2);
+
+		// Act
+		//
+		subject.submit("wait 0");
+		subject.submit("fail");
+		subject.submit("wait 0");
+		subject.close();
+
+		// Assert
+		//
+		String expected = "Batch command: [wait 0]\nwaited 0\n"
+		                + "Batch command: [fail]\nfailing\n"
+		                + "Segment [2] failed: [fail] java.lang.IllegalStateException: boom\n"
+		                + "Batch command: [wait 0]\nwaited 0\n";
+
+		assertEquals(expected, text());
+		assertEquals(1, subject.failed());
+	}
+
+	@Test
+	public void onClose_withStatusMessages_thenInSegmentOutput()
+	{
+		// Arrange
+		//
+		mm.setAsyncExecutor(Runnable::run);
+		ParallelBatch subject = new ParallelBatch(mm, new BatchAction(new String[0]), out, 2);
+
+		// Act
+		//
+		subject.submit("later");
+		subject.close();
+
+		// Assert
+		//
+		String[] lines = text().split("\n");
+
+		assertEquals(4, lines.length);
+		assertEquals("Batch command: [later]", lines[0]);
+		assertEquals("[STATUS] later: Started", lines[1]);
+		assertEquals("ran later", lines[2]);
+		assertTrue(lines[3].startsWith("[STATUS] later: Completed in "));
+	}
+
+	private String text()
+	{
+		return new String(buffer.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+	}
+}
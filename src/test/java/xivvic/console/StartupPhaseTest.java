@@ -0,0 +1,185 @@
+package xivvic.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import xivvic.console.action.Action;
+import xivvic.console.action.ActionBase;
+import xivvic.console.action.ActionTiming;
+
+public class StartupPhaseTest
+{
+	private final List<String>          ran  = new CopyOnWriteArrayList<>();
+	private final Map<Action, String[]> deps = new IdentityHashMap<>();
+	private final Set<String>           done = new HashSet<>();
+	private final PrintStream           out  = new PrintStream(new ByteArrayOutputStream(), true);
+
+	@Test
+	public void onRun_withDiamond_thenIndependentActionsOverlap()
+	{
+		// Arrange
+		//
+		CyclicBarrier both = new CyclicBarrier(2);
+
+		Action a = action("a", null);
+		Action b = action("b", both, "a");
+		Action c = action("c", both, "a");
+		Action d = action("d", null, "b", "c");
+
+		StartupPhase subject = new StartupPhase(ActionTiming.INITIALIZE, Arrays.asList(d, c, b, a), deps, done, out, 4);
+
+		// Act
+		//
+		subject.run();
+
+		// Assert
+		//
+		assertEquals("a", ran.get(0));
+		assertEquals("d", ran.get(3));
+		assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d")), done);
+	}
+
+	@Test
+	public void onRun_withNoDeclaredDependencies_thenRunInRegistrationOrder()
+	{
+		// Arrange
+		//
+		List<Action> actions = Arrays.asList(sleeper("a", 60), sleeper("b", 40), sleeper("c", 20), sleeper("d", 0));
+
+		StartupPhase subject = new StartupPhase(ActionTiming.INITIALIZE, actions, deps, done, out, 4);
+
+		// Act
+		//
+		subject.run();
+
+		// Assert
+		//
+		assertEquals(Arrays.asList("a", "b", "c", "d"), ran);
+	}
+
+	@Test
+	public void onRun_withFailure_thenDependentsNeverStart()
+	{
+		// Arrange
+		//
+		Action bad = new ActionBase("bad", "Fails", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				throw new IllegalArgumentException("no cache");
+			}
+		};
+		Action after = action("after", null, "bad");
+
+		StartupPhase subject = new StartupPhase(ActionTiming.INITIALIZE, Arrays.asList(bad, after), deps, done, out, 2);
+
+		// Act
+		//
+		try
+		{
+			subject.run();
+			fail("Expected the failure to be thrown");
+		}
+		catch (IllegalStateException e)
+		{
+			// Assert
+			//
+			assertTrue(e.getMessage(), e.getMessage().contains("[bad] failed"));
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+
+		assertTrue(ran.isEmpty());
+		assertTrue(done.isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void onRun_withCycle_thenThrowBeforeRunning()
+	{
+		Action x = action("x", null, "y");
+		Action y = action("y", null, "x");
+
+		try
+		{
+			new StartupPhase(ActionTiming.INITIALIZE, Arrays.asList(x, y), deps, done, out, 2).run();
+		}
+		finally
+		{
+			assertEquals(Collections.emptyList(), ran);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void onCreate_withUnknownDependency_thenThrow()
+	{
+		Action x = action("x", null, "missing");
+
+		new StartupPhase(ActionTiming.INITIALIZE, Arrays.asList(x), deps, done, out, 2);
+	}
+
+	// Registered without dependencies, as before they could be declared.
+	//
+	private Action sleeper(String name, long ms)
+	{
+		return new ActionBase(name, "Startup test action", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				try
+				{
+					Thread.sleep(ms);
+				}
+				catch (InterruptedException e)
+				{
+					throw new IllegalStateException(e);
+				}
+
+				ran.add(name);
+			}
+		};
+	}
+
+	private Action action(String name, CyclicBarrier barrier, String... dependsOn)
+	{
+		Action action = new ActionBase(name, "Startup test action", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				if (barrier != null)
+				{
+					try
+					{
+						barrier.await(10, TimeUnit.SECONDS);
+					}
+					catch (Exception e)
+					{
+						throw new IllegalStateException("Actions did not overlap", e);
+					}
+				}
+
+				ran.add(name);
+			}
+		};
+
+		deps.put(action, dependsOn);
+		return action;
+	}
+}
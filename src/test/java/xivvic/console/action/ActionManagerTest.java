@@ -0,0 +1,363 @@
+package xivvic.console.action;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ActionManagerTest
+{
+	private ActionManager subject;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Found through the service file written by the provider test.
+	 */
+	public static class TestProvider
+	implements ActionProvider
+	{
+		@Override
+		public void provide(ActionManager am)
+		{
+			am.register("report", "Build a report", () -> new DummyAction("report", "Built", true), "plugin");
+		}
+	}
+
+	@Before
+	public void before()
+	{
+		subject = new ActionManager();
+	}
+
+	@Test
+	public void onCommands_withUnknownContext_thenReturnEmptyArray()
+	{
+		assertEquals(0, subject.commands("nowhere").length);
+	}
+
+	@Test
+	public void onCommands_withContext_thenReturnOnlyThatContextSorted()
+	{
+		// Arrange
+		//
+		subject.register(new DummyAction("zeta",  "z", true), "main", "2");
+		subject.register(new DummyAction("alpha", "a", true), "main", "1");
+		subject.register(new DummyAction("other", "o", true), "mainly");
+		subject.register(new DummyAction("bye",   "b", true), ActionManager.GLOBAL_CONTEXT);
+
+		// Act
+		//
+		String[] result = subject.commands("main");
+
+		// Assert
+		//
+		assertArrayEquals(new String[] { "1", "2", "alpha", "zeta" }, result);
+	}
+
+	@Test
+	public void onCommands_withNullContext_thenReturnGlobalCommands()
+	{
+		subject.register(new DummyAction("Exit", "e", true), ActionManager.GLOBAL_CONTEXT, "quit");
+		subject.register(new DummyAction("list", "l", true), "main");
+
+		assertArrayEquals(new String[] { "exit", "quit" }, subject.commands(null));
+		assertArrayEquals(new String[] { "exit", "quit" }, subject.commands(ActionManager.GLOBAL_CONTEXT));
+	}
+
+	@Test
+	public void onCommand_withDifferentCase_thenReturnRegisteredAction()
+	{
+		Action action = new DummyAction("List", "l", true);
+		subject.register(action, "Main");
+
+		assertSame(action, subject.command("MAIN", "list"));
+		assertArrayEquals(new String[] { "list" }, subject.commands("main"));
+	}
+
+	@Test
+	public void onCommand_withNonAsciiCase_thenResolveLikeCharacterToLowerCase()
+	{
+		Action action = new DummyAction("\u00C9tat", "e", true);
+		subject.register(action, "Donn\u00E9es");
+
+		assertSame(action, subject.command("DONN\u00C9ES", "\u00E9TAT"));
+
+		for (char c = 0; c < Character.MAX_VALUE; c++)
+		{
+			assertEquals(String.valueOf(Character.toLowerCase(c)), CommandTable.fold(String.valueOf(c)));
+		}
+	}
+
+	@Test
+	public void onCommand_withCharSequenceViews_thenResolveIgnoringCase()
+	{
+		Action action = new DummyAction("Export", "x", true);
+		subject.register(action, "Data", "exp");
+
+		assertSame(action, subject.command(new StringBuilder("dATA"), new StringBuilder("EXP")));
+		assertSame(action, subject.command("data.export".subSequence(0, 4), "data.export".subSequence(5, 11)));
+		assertEquals(null, subject.command("data", "ex"));
+		assertEquals(null, subject.command(null, "export"));
+	}
+
+	@Test
+	public void onCommands_withConcurrentRegistration_thenReadersSeeConsistentSnapshots() throws Exception
+	{
+		// Arrange
+		//
+		final int                       count = 5000;
+		final AtomicReference<Throwable> fail = new AtomicReference<>();
+
+		Thread writer = new Thread(() ->
+		{
+			for (int i = 0; i < count; i++)
+			{
+				subject.register(new DummyAction("cmd" + i, "d", true), "ctx" + (i % 10), "alias" + i);
+			}
+		});
+
+		// Act
+		//
+		writer.start();
+		try
+		{
+			while (writer.isAlive())
+			{
+				subject.commands();
+				for (String name : subject.commands("ctx3"))
+				{
+					assertTrue(subject.command("ctx3", name) != null);
+				}
+			}
+		}
+		catch (Throwable t)
+		{
+			fail.set(t);
+		}
+		writer.join();
+
+		// Assert
+		//
+		assertEquals(null, fail.get());
+		assertEquals(2 * count, subject.commands().length);
+		assertEquals(2 * count / 10, subject.commands("ctx3").length);
+	}
+
+	@Test
+	public void onRegister_withManySingleRegistrations_thenEachResolvesAndNamesSorted()
+	{
+		// Arrange
+		//
+		int count = 2000;
+
+		// "0~" and "1_" fold to the same hash.
+		//
+		Action left  = new DummyAction("0~", "l", true);
+		Action right = new DummyAction("1_", "r", true);
+
+		// Act
+		//
+		for (int i = 0; i < count; i++)
+		{
+			subject.register(new DummyAction("cmd" + i, "c", true), "ctx");
+		}
+
+		subject.register(left,  "ctx");
+		subject.register(right, "ctx");
+		subject.register(new DummyAction("CMD7", "replaced", true), "ctx");
+
+		// Assert
+		//
+		String[] names = subject.commands("ctx");
+
+		assertEquals(count + 2, names.length);
+		assertEquals("0~", names[0]);
+		assertEquals("1_", names[1]);
+		assertEquals("replaced", subject.command("ctx", "cmd7").description());
+		assertSame(left,  subject.command("ctx", "0~"));
+		assertSame(right, subject.command("ctx", "1_"));
+
+		for (int i = 0; i < count; i++)
+		{
+			assertEquals("cmd" + i, subject.command("ctx", "CMD" + i).name().toLowerCase());
+		}
+	}
+
+	@Test
+	public void onRegisterAll_withRepeatedName_thenPublishOnceAndLastWins()
+	{
+		// Arrange
+		//
+		Action first  = new DummyAction("first",  "f", true);
+		Action second = new DummyAction("second", "s", true);
+		int[]  seen   = new int[1];
+
+		// Act
+		//
+		subject.registerAll(am ->
+		{
+			am.register(first,  "ctx", "go");
+			am.register(second, "ctx", "GO");
+			seen[0] = subject.commands("ctx").length;
+		});
+
+		// Assert
+		//
+		assertEquals(0, seen[0]);
+		assertSame(second, subject.command("ctx", "go"));
+		assertArrayEquals(new String[] { "first", "go", "second" }, subject.commands("ctx"));
+	}
+
+	@Test
+	public void onRegisterAll_withThrowingGroup_thenPublishNothing()
+	{
+		// Arrange
+		//
+		Action command = new DummyAction("list",  "l", true);
+		Action cleanup = new DummyAction("clean", "c", true);
+
+		// Act
+		//
+		try
+		{
+			subject.registerAll(am ->
+			{
+				am.register(command, "ctx");
+				am.register(cleanup, ActionTiming.SHUTDOWN);
+				throw new IllegalStateException("boom");
+			});
+			fail("Expected the group's failure");
+		}
+		catch (IllegalStateException expected)
+		{
+			assertEquals("boom", expected.getMessage());
+		}
+
+		// Assert
+		//
+		assertEquals(0, subject.contexts().length);
+		assertEquals(0, subject.commands("ctx").length);
+		assertEquals(null, subject.command("ctx", "list"));
+		assertTrue(subject.getActionsFor(ActionTiming.SHUTDOWN).isEmpty());
+	}
+
+	@Test
+	public void onLoadProviders_withServiceFile_thenRegisterLazyActions()
+	throws Exception
+	{
+		// Arrange
+		//
+		File services = new File(folder.getRoot(), "META-INF/services");
+		services.mkdirs();
+		Files.write(new File(services, ActionProvider.class.getName()).toPath(),
+				Collections.singletonList(TestProvider.class.getName()), StandardCharsets.UTF_8);
+
+		URL[]              path = { folder.getRoot().toURI().toURL() };
+		ClassLoader      loader = new URLClassLoader(path, getClass().getClassLoader());
+
+		// Act
+		//
+		int count = subject.loadProviders(loader);
+
+		// Assert
+		//
+		assertEquals(1, count);
+		LazyAction action = (LazyAction) subject.command("plugin", "report");
+		assertEquals("Build a report", action.description());
+		assertEquals(false, action.isCreated());
+	}
+
+	@Test
+	public void onSuggest_withTypo_thenClosestFromContextAndGlobal()
+	{
+		// Arrange
+		//
+		subject.register(new DummyAction("list",   "l", true), "main", "1");
+		subject.register(new DummyAction("last",   "l", true), "main", "2");
+		subject.register(new DummyAction("delete", "d", true), "main", "3");
+		subject.register(new DummyAction("LIFT",   "g", true), ActionManager.GLOBAL_CONTEXT);
+
+		// Act
+		//
+		String[] near = subject.suggest("main", "lsit").toArray(new String[0]);
+		String[] some = subject.suggest("main", "lisst", 2, 1).toArray(new String[0]);
+
+		// Assert
+		//
+		assertArrayEquals(new String[] { "last", "LIFT", "list" }, near);
+		assertArrayEquals(new String[] { "list" }, some);
+	}
+
+	@Test
+	public void onSuggest_withSingleLetter_thenNoWholesaleReplacement()
+	{
+		// Arrange
+		//
+		subject.register(new DummyAction("up", "u", true), "main", "1", "u");
+
+		// Act
+		//
+		String[] rv = subject.suggest("main", "x").toArray(new String[0]);
+
+		// Assert
+		//
+		assertEquals(Arrays.asList(), Arrays.asList(rv));
+		assertEquals(Arrays.asList("u", "up"), subject.suggest("main", "uo"));
+	}
+
+	@Test
+	public void onComplete_withPrefix_thenActiveThenGlobalThenExplicitForms()
+	{
+		// Arrange
+		//
+		subject.register(new DummyAction("list",  "l", true), "main", "1");
+		subject.register(new DummyAction("load",  "d", true), "main");
+		subject.register(new DummyAction("log",   "g", true), ActionManager.GLOBAL_CONTEXT, "list");
+		subject.register(new DummyAction("clear", "c", true), "lab");
+
+		// Act
+		//
+		List<String> bare     = subject.complete("main", "L");
+		List<String> explicit = subject.complete("main", "Lab.c");
+
+		// Assert
+		//
+		assertEquals(Arrays.asList("list", "load", "log", "lab.clear"), bare);
+		assertEquals(Arrays.asList("Lab.clear"), explicit);
+	}
+
+	@Test
+	public void onComplete_withContextsDifferingInCase_thenListSharedCommandsOnce()
+	{
+		// Arrange
+		//
+		subject.register(new DummyAction("list", "l", true), "Main");
+		subject.register(new DummyAction("load", "d", true), "main");
+
+		// Act
+		//
+		List<String> result = subject.complete(ActionManager.GLOBAL_CONTEXT, "ma");
+
+		// Assert
+		//
+		assertEquals(Arrays.asList("Main.list", "Main.load"), result);
+	}
+}
@@ -0,0 +1,114 @@
+package xivvic.console.action;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActionMetricsTest
+{
+	private boolean wasEnabled;
+
+	@Before
+	public void before()
+	{
+		wasEnabled = ActionMetrics.isEnabled();
+	}
+
+	@After
+	public void after()
+	{
+		ActionMetrics.setEnabled(wasEnabled);
+	}
+
+	@Test
+	public void onInvoke_withRecordingOn_thenCountInvocationsAndErrors()
+	{
+		// Arrange
+		//
+		ActionMetrics.setEnabled(true);
+		ActionBase action = new ActionBase("metrics-test-fails", "Fails on odd input", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				if ("odd".equals(param))
+				{
+					throw new IllegalArgumentException();
+				}
+			}
+		};
+
+		// Act
+		//
+		action.invoke("even");
+		action.invoke("even");
+		try
+		{
+			action.invoke("odd");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected.
+			//
+		}
+
+		// Assert
+		//
+		ActionMetrics.Snapshot s = ActionMetrics.snapshot("metrics-test-fails");
+		assertEquals(3, s.count());
+		assertEquals(1, s.errors());
+		assertTrue(s.p50() <= s.p99() && s.p99() <= s.p999() && s.p999() <= s.max());
+	}
+
+	@Test
+	public void onInvoke_withRecordingOff_thenRecordNothing()
+	{
+		ActionMetrics.setEnabled(false);
+		new DummyAction("metrics-test-off", "Not recorded", true).invoke(null);
+
+		assertNull(ActionMetrics.snapshot("metrics-test-off"));
+	}
+
+	@Test
+	public void onQuantiles_withUniformValues_thenWithinBucketPrecision()
+	{
+		// Arrange
+		//
+		LatencyHistogram h = new LatencyHistogram();
+		for (long v = 1; v <= 100000; v++)
+		{
+			h.record(v * 1000);
+		}
+
+		// Act
+		//
+		long[] q = h.quantiles(0.5, 0.99, 0.999);
+
+		// Assert
+		//
+		assertEquals(100000, h.count());
+		assertEquals(50000000, q[0], 50000000 * 0.07);
+		assertEquals(99000000, q[1], 99000000 * 0.07);
+		assertEquals(99900000, q[2], 99900000 * 0.07);
+		assertEquals(100000000, h.max());
+	}
+
+	@Test
+	public void onIndex_withEveryBucket_thenUpperEdgeMapsBack()
+	{
+		for (int i = 0; i < 960; i++)
+		{
+			long edge = LatencyHistogram.upperEdge(i);
+
+			assertEquals(i, LatencyHistogram.index(edge));
+			if (i > 0)
+			{
+				assertEquals(i, LatencyHistogram.index(LatencyHistogram.upperEdge(i - 1) + 1));
+			}
+		}
+	}
+}
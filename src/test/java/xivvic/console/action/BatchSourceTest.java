@@ -0,0 +1,66 @@
+package xivvic.console.action;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BatchSourceTest
+{
+	@Test
+	public void onArraySource_withNullEntries_thenSkipThem() throws IOException
+	{
+		BatchSource source = BatchSource.of(new String[] { "a", null, "b" });
+
+		assertEquals(3, source.size());
+		assertEquals("a", source.next());
+		assertEquals("b", source.next());
+		assertNull(source.next());
+	}
+
+	@Test
+	public void onReaderSource_thenReturnOneCommandPerLine() throws IOException
+	{
+		try (BatchSource source = BatchSource.of(new StringReader("1 hello\r\n2\n\nexit")))
+		{
+			assertEquals(-1, source.size());
+			assertEquals("1 hello", source.next());
+			assertEquals("2",       source.next());
+			assertEquals("",        source.next());
+			assertEquals("exit",    source.next());
+			assertNull(source.next());
+		}
+	}
+
+	@Test
+	public void onBatchAction_withPath_thenStreamFileEachRun() throws IOException
+	{
+		Path file = Files.createTempFile("batch", ".txt");
+		try
+		{
+			Files.write(file, Arrays.asList("list", "data.export now"), StandardCharsets.UTF_8);
+			BatchAction action = new BatchAction(file);
+
+			for (int run = 0; run < 2; run++)
+			{
+				try (BatchSource source = action.source())
+				{
+					assertEquals("list",            source.next());
+					assertEquals("data.export now", source.next());
+					assertNull(source.next());
+				}
+			}
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package xivvic.console.action;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class CancellationTokenTest
+{
+	@Test
+	public void onHoldInterrupts_withTokenCancelledBeforeRun_thenInterruptWaitsForRelease()
+	{
+		// Arrange
+		//
+		CancellationToken token = new CancellationToken();
+		AtomicBoolean      held = new AtomicBoolean();
+		AtomicBoolean  released = new AtomicBoolean();
+
+		token.cancel("test");
+
+		// Act
+		//
+		token.run(() ->
+		{
+			token.holdInterrupts();
+			held.set(Thread.currentThread().isInterrupted());
+			token.releaseInterrupts();
+			released.set(Thread.currentThread().isInterrupted());
+		});
+
+		// Assert
+		//
+		assertFalse(held.get());
+		assertTrue(released.get());
+		assertFalse(Thread.currentThread().isInterrupted());
+	}
+}
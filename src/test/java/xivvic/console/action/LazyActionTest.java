@@ -0,0 +1,92 @@
+package xivvic.console.action;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class LazyActionTest
+{
+	private final AtomicInteger built   = new AtomicInteger();
+	private final List<Object>  invoked = new ArrayList<>();
+
+	private final LazyAction subject = new LazyAction("lazy", "Built on first use", () ->
+	{
+		built.incrementAndGet();
+		return new ActionBase("real", "The real action", true)
+		{
+			@Override
+			protected synchronized void internal_invoke(Object param)
+			{
+				invoked.add(param);
+			}
+		};
+	});
+
+	@Test
+	public void onInvoke_fromManyThreads_thenBuildOnce()
+	throws Exception
+	{
+		// Arrange
+		//
+		CountDownLatch start   = new CountDownLatch(1);
+		List<Thread>   threads = new ArrayList<>();
+
+		for (int i = 0; i < 8; i++)
+		{
+			Thread t = new Thread(() ->
+			{
+				try
+				{
+					start.await();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				subject.invoke("x");
+			});
+			t.start();
+			threads.add(t);
+		}
+
+		// Act
+		//
+		start.countDown();
+		for (Thread t : threads)
+		{
+			t.join();
+		}
+
+		// Assert
+		//
+		assertEquals(1, built.get());
+		assertEquals(8, invoked.size());
+	}
+
+	@Test
+	public void onDisable_beforeFirstUse_thenCarriedOverWithoutBuilding()
+	{
+		// Act
+		//
+		subject.disable();
+		subject.invoke("ignored");
+
+		// Assert
+		//
+		assertFalse(subject.isCreated());
+		assertFalse(subject.get().is_enabled());
+		assertEquals(1, built.get());
+
+		subject.enable();
+		subject.invoke("now");
+		assertTrue(subject.get().is_enabled());
+		assertEquals("now", invoked.get(0));
+	}
+}
@@ -0,0 +1,225 @@
+package xivvic.console.action;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class PipelineTest
+{
+	private static final int RECORDS = 200000;
+
+	private final AtomicLong produced = new AtomicLong();
+
+	// export [n] -- writes the numbers from 0, forever if no count is given
+	//
+	private final StreamAction export = new Stage("export", (param, in, out) ->
+	{
+		long limit = param == null ? Long.MAX_VALUE : Long.parseLong(param.toString());
+
+		for (long i = 0; i < limit; i++)
+		{
+			out.accept(i);
+			produced.incrementAndGet();
+		}
+	});
+
+	// filter k -- passes the multiples of k
+	//
+	private final StreamAction filter = new Stage("filter", (param, in, out) ->
+	{
+		long k = Long.parseLong(param.toString());
+
+		for (Object r; (r = in.next()) != null; )
+		{
+			if ((Long) r % k == 0)
+			{
+				out.accept(r);
+			}
+		}
+	});
+
+	private final StreamAction count = new Stage("count", (param, in, out) ->
+	{
+		long n = 0;
+		while (in.next() != null)
+		{
+			n++;
+		}
+
+		out.accept(n);
+	});
+
+	private final StreamAction head = new Stage("head", (param, in, out) ->
+	{
+		int n = Integer.parseInt(param.toString());
+
+		for (Object r; n-- > 0 && (r = in.next()) != null; )
+		{
+			out.accept(r);
+		}
+	});
+
+	@Test
+	public void onRun_withManyRecordsThroughSmallQueues_thenEveryRecordArrives()
+	throws Exception
+	{
+		// Arrange
+		//
+		Pipeline     subject = new Pipeline(Arrays.asList(export, filter, count), Arrays.asList("" + RECORDS, "2", null), 16);
+		List<Object> results = new ArrayList<>();
+
+		// Act
+		//
+		subject.run(results::add);
+
+		// Assert
+		//
+		assertEquals("export | filter | count", subject.name());
+		assertEquals(Arrays.<Object>asList((long) RECORDS / 2), results);
+	}
+
+	@Test
+	public void onRun_withChunksHandedBack_thenRecordsArriveOnceInOrder()
+	throws Exception
+	{
+		// Arrange
+		//
+		Pipeline     subject = new Pipeline(Arrays.asList(export, filter), Arrays.asList("" + RECORDS, "1"), 16);
+		List<Object> results = new ArrayList<>();
+
+		// Act
+		//
+		subject.run(results::add);
+
+		// Assert
+		//
+		assertEquals(RECORDS, results.size());
+		for (int i = 0; i < RECORDS; i++)
+		{
+			assertEquals((long) i, results.get(i));
+		}
+	}
+
+	@Test
+	public void onRun_withStageReturningEarly_thenEndlessProducerIsStopped()
+	throws Exception
+	{
+		// Arrange
+		//
+		Pipeline     subject = new Pipeline(Arrays.asList(export, head), Arrays.asList(null, "3"), 16);
+		List<Object> results = new ArrayList<>();
+
+		// Act
+		//
+		subject.run(results::add);
+
+		// Assert
+		//
+		assertEquals(Arrays.<Object>asList(0L, 1L, 2L), results);
+
+		Thread.sleep(20);
+		long stopped = produced.get();
+		Thread.sleep(50);
+		assertEquals(stopped, produced.get());
+	}
+
+	@Test
+	public void onRun_withFailingStage_thenFailureIsThrownAndProducerIsStopped()
+	throws Exception
+	{
+		// Arrange
+		//
+		IllegalStateException boom = new IllegalStateException("boom");
+
+		StreamAction failing = new Stage("fail", (param, in, out) ->
+		{
+			for (int i = 0; i < 100; i++)
+			{
+				in.next();
+			}
+
+			throw boom;
+		});
+
+		Pipeline subject = new Pipeline(Arrays.asList(export, failing, count), Arrays.asList(null, null, null), 16);
+
+		// Act
+		//
+		try
+		{
+			subject.run(r -> fail("Nothing should reach the sink"));
+			fail("Expected the stage's failure");
+		}
+		catch (IllegalStateException e)
+		{
+			// Assert
+			//
+			assertSame(boom, e);
+		}
+
+		Thread.sleep(20);
+		long stopped = produced.get();
+		Thread.sleep(50);
+		assertEquals(stopped, produced.get());
+	}
+
+	@FunctionalInterface
+	private interface Body
+	{
+		void process(Object param, StreamAction.Input in, StreamAction.Output out) throws InterruptedException;
+	}
+
+	private static final class Stage
+	implements StreamAction
+	{
+		private final String name;
+		private final Body   body;
+
+		private Stage(String name, Body body)
+		{
+			this.name = name;
+			this.body = body;
+		}
+
+		@Override
+		public String name()
+		{
+			return name;
+		}
+
+		@Override
+		public String description()
+		{
+			return name;
+		}
+
+		@Override
+		public void process(Object param, Input in, Output out) throws InterruptedException
+		{
+			body.process(param, in, out);
+		}
+
+		@Override
+		public void enable()
+		{
+		}
+
+		@Override
+		public void disable()
+		{
+		}
+
+		@Override
+		public boolean is_enabled()
+		{
+			return true;
+		}
+	}
+}
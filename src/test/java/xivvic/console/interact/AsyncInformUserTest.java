@@ -0,0 +1,182 @@
+package xivvic.console.interact;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static xivvic.console.interact.MessageChannel.ERROR;
+import static xivvic.console.interact.MessageChannel.STATUS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class AsyncInformUserTest
+{
+	private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final InformUser sink = new InformUser()
+	{
+		@Override
+		public void displayTable(String id, String[] content)
+		{
+			delivered.add(id + " " + content.length);
+		}
+
+		@Override
+		public void userMessage(MessageChannel channel, String topic, String msg)
+		{
+			delivered.add(channel + " " + topic + " " + msg);
+		}
+	};
+
+	private final InformUser stalledSink = new InformUser()
+	{
+		@Override
+		public void displayTable(String id, String[] content) {}
+
+		@Override
+		public void userMessage(MessageChannel channel, String topic, String msg)
+		{
+			try
+			{
+				release.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			sink.userMessage(channel, topic, msg);
+		}
+	};
+
+	@Test
+	public void onClose_withQueuedMessages_thenAllDeliveredInOrder()
+	{
+		// Arrange
+		//
+		AsyncInformUser subject = new AsyncInformUser(sink);
+
+		// Act
+		//
+		for (int i = 0; i < 10000; i++)
+		{
+			subject.userMessage(ERROR, "t", Integer.toString(i));
+		}
+		subject.displayTable("table", new String[] { "a", "b" });
+		subject.close();
+
+		// Assert
+		//
+		assertEquals(10001, delivered.size());
+		assertTrue(delivered.contains("table 2"));
+		delivered.remove("table 2");
+		for (int i = 0; i < 10000; i++)
+		{
+			assertEquals("ERROR t " + i, delivered.get(i));
+		}
+	}
+
+	@Test
+	public void onClose_withSendersRacing_thenNoErrorLost() throws Exception
+	{
+		// Arrange
+		//
+		AsyncInformUser subject = new AsyncInformUser(sink);
+		CountDownLatch    start = new CountDownLatch(1);
+		Thread[]        senders = new Thread[4];
+
+		for (int t = 0; t < senders.length; t++)
+		{
+			senders[t] = new Thread(() ->
+			{
+				try
+				{
+					start.await();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+
+				for (int i = 0; i < 5000; i++)
+				{
+					subject.userMessage(ERROR, "t", "m");
+				}
+			});
+			senders[t].start();
+		}
+
+		// Act
+		//
+		start.countDown();
+		Thread.sleep(1);
+		subject.close();
+
+		for (Thread sender : senders)
+		{
+			sender.join();
+		}
+
+		// Assert
+		//
+		assertEquals(senders.length * 5000, delivered.size());
+	}
+
+	@Test
+	public void onSend_withStalledSinkAndDropOldest_thenSenderNeverWaits()
+	{
+		// Arrange
+		//
+		Map<MessageChannel, Backpressure> policies = new EnumMap<>(MessageChannel.class);
+		policies.put(STATUS, Backpressure.DROP_OLDEST);
+		AsyncInformUser subject = new AsyncInformUser(8, policies, stalledSink);
+
+		// Act
+		//
+		for (int i = 0; i < 1000; i++)
+		{
+			subject.userMessage(STATUS, "t", Integer.toString(i));
+		}
+		release.countDown();
+		subject.close();
+
+		// Assert
+		//
+		long dropped = subject.dropped(STATUS);
+		assertTrue(dropped >= 1000 - 8 - 1);
+		assertEquals(1000 - dropped, delivered.size());
+		assertEquals("STATUS t 999", delivered.get(delivered.size() - 1));
+	}
+
+	@Test
+	public void onSend_withStalledSinkAndCoalesce_thenKeepLatestPerTopic()
+	{
+		// Arrange
+		//
+		AsyncInformUser subject = new AsyncInformUser(stalledSink);
+
+		// Act
+		//
+		subject.userMessage(ERROR, "first", "blocks the writer");
+		for (int i = 0; i < 1000; i++)
+		{
+			subject.userMessage(STATUS, "progress", i + "%");
+			subject.userMessage(STATUS, "phase", "phase " + (i / 100));
+		}
+		release.countDown();
+		subject.close();
+
+		// Assert
+		//
+		assertTrue(delivered.contains("STATUS progress 999%"));
+		assertTrue(delivered.contains("STATUS phase phase 9"));
+		assertTrue(delivered.size() < 100);
+		assertEquals(2000 + 1 - delivered.size(), subject.dropped(STATUS));
+	}
+}
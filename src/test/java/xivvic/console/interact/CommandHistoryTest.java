@@ -0,0 +1,130 @@
+package xivvic.console.interact;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CommandHistoryTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path           file;
+	private CommandHistory subject;
+
+	@Before
+	public void before()
+	throws Exception
+	{
+		file    = new File(folder.getRoot(), "history").toPath();
+		subject = new CommandHistory(file, 1024);
+	}
+
+	@After
+	public void after()
+	throws Exception
+	{
+		subject.close();
+	}
+
+	@Test
+	public void onAppend_thenNumberedFromOneAndKeptAcrossReopen()
+	throws Exception
+	{
+		// Act
+		//
+		long one = subject.append("list");
+		long two = subject.append("data.export \u00e9t\u00e9");
+		subject.append("   ");
+		subject.close();
+
+		subject = new CommandHistory(file);
+
+		// Assert
+		//
+		assertEquals(1, one);
+		assertEquals(2, two);
+		assertEquals(2, subject.size());
+		assertEquals("list", subject.get(1));
+		assertEquals("data.export \u00e9t\u00e9", subject.get(2));
+		assertEquals(3, subject.append("help"));
+	}
+
+	@Test
+	public void onAppend_pastCapacity_thenOldestOverwritten()
+	throws Exception
+	{
+		// Act
+		//
+		for (int i = 1; i <= 500; i++)
+		{
+			subject.append("command number " + i);
+		}
+
+		subject.close();
+		subject = new CommandHistory(file);
+
+		// Assert
+		//
+		assertEquals(500, subject.last());
+		assertTrue(subject.size() < 500);
+		assertNull(subject.get(1));
+
+		for (long n = subject.first(); n <= subject.last(); n++)
+		{
+			assertEquals("command number " + n, subject.get(n));
+		}
+	}
+
+	@Test
+	public void onExpand_withReferences_thenRecallLines()
+	{
+		// Arrange
+		//
+		subject.append("list all");
+		subject.append("export csv");
+		subject.append("list some");
+
+		// Act / Assert
+		//
+		assertEquals("list some",  subject.expand("!!"));
+		assertEquals("export csv", subject.expand("!2"));
+		assertEquals("export csv", subject.expand("!-2"));
+		assertEquals("list all",   subject.expand("!?all?"));
+		assertEquals("export csv", subject.expand("!ex"));
+		assertEquals("plain",      subject.expand("plain"));
+		assertNull(subject.expand("!9"));
+		assertNull(subject.expand("!nothing"));
+	}
+
+	@Test
+	public void onSearch_repeatedFromLastMatch_thenWalkOlderMatches()
+	{
+		// Arrange
+		//
+		subject.append("list a");
+		subject.append("help");
+		subject.append("list b");
+
+		// Act
+		//
+		long first  = subject.search("list", Long.MAX_VALUE);
+		long second = subject.search("list", first);
+		long none   = subject.search("list", second);
+
+		// Assert
+		//
+		assertEquals(3, first);
+		assertEquals(1, second);
+		assertEquals(-1, none);
+	}
+}
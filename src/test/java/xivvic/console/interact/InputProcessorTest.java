@@ -1,19 +1,47 @@
 package xivvic.console.interact;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import xivvic.console.action.Action;
 import xivvic.console.action.ActionManager;
+import xivvic.console.action.DummyAction;
+import xivvic.console.action.StreamAction;
 import xivvic.console.interact.InputProcessor;
 
 @RunWith(MockitoJUnitRunner.class)
 public class InputProcessorTest
 {
 	@Mock ActionManager am;
+
+	private ActionManager registry;
+	private Action        mainList;
+	private Action        dataList;
+	private Action        export;
+	private Action        help;
+
+	@Before
+	public void before()
+	{
+		registry = new ActionManager();
+		mainList = new DummyAction("list",   "main list", true);
+		dataList = new DummyAction("list",   "data list", true);
+		export   = new DummyAction("export", "export",    true);
+		help     = new DummyAction("help",   "help",      true);
+
+		registry.register(mainList, "main", "1");
+		registry.register(dataList, "data");
+		registry.register(export,   "data", "2");
+		registry.register(help,     ActionManager.GLOBAL_CONTEXT, "?");
+	}
+
 	@Test
 	public void onProcessInput_withNullText_thenReturnEmptySpecification()
 	{
@@ -26,4 +54,233 @@ public class InputProcessorTest
 		assertEquals(0, InputProcessor.processInput("ctx", "", am).length);
 	}
 
+	///////////////////////////////
+	// Golden results            //
+	///////////////////////////////
+
+	@Test
+	public void onProcessInput_withVerbOnly_thenReturnVerbWithoutParameter()
+	{
+		OpSpec[] ops = process("main", "list");
+
+		assertEquals(1, ops.length);
+		assertOp(ops[0], "list", null, mainList);
+	}
+
+	@Test
+	public void onProcessInput_withPaddedVerbAndParameter_thenTrimBoth()
+	{
+		OpSpec[] ops = process("main", "   1   two  words  ");
+
+		assertEquals(1, ops.length);
+		assertOp(ops[0], "1", "two  words", mainList);
+	}
+
+	@Test
+	public void onProcessInput_withUpperCaseVerb_thenKeepTextAsTyped()
+	{
+		OpSpec[] ops = process("main", "LIST x");
+
+		assertEquals(1, ops.length);
+		assertOp(ops[0], "LIST", "x", mainList);
+	}
+
+	@Test
+	public void onProcessInput_withUnknownVerbInContext_thenFallBackToGlobal()
+	{
+		OpSpec[] ops = process("main", "? topic");
+
+		assertEquals(1, ops.length);
+		assertOp(ops[0], "?", "topic", help);
+	}
+
+	@Test
+	public void onProcessInput_withUnknownVerb_thenReturnEmptySpecification()
+	{
+		assertEquals(0, process("main", "nothing here").length);
+	}
+
+	@Test
+	public void onProcessInput_withTabAfterVerb_thenTabIsPartOfVerb()
+	{
+		assertEquals(0, process("main", "list\tx").length);
+	}
+
+	@Test
+	public void onProcessInput_withExplicitContext_thenResolveInThatContext()
+	{
+		OpSpec[] ops = process("main", "data.list now");
+
+		assertEquals(1, ops.length);
+		assertOp(ops[0], "list", "now", dataList);
+	}
+
+	@Test
+	public void onProcessInput_withCompoundInput_thenReturnEachCommand()
+	{
+		OpSpec[] ops = process("main", "1 hello ## help##   ? a  b ");
+
+		assertEquals(3, ops.length);
+		assertOp(ops[0], "1",    "hello", mainList);
+		assertOp(ops[1], "help", null,    help);
+		assertOp(ops[2], "?",    "a  b",  help);
+	}
+
+	@Test
+	public void onProcessInput_withExplicitContext_thenLaterCommandsKeepThatContext()
+	{
+		OpSpec[] ops = process("main", "data.2 ## list");
+
+		assertEquals(2, ops.length);
+		assertOp(ops[0], "2",    null, export);
+		assertOp(ops[1], "list", null, dataList);
+	}
+
+	@Test
+	public void onProcessInput_withAnyUnknownCommand_thenReturnEmptySpecification()
+	{
+		assertEquals(0, process("main", "list ## bogus ## help").length);
+	}
+
+	@Test
+	public void onProcessInput_withTrailingSeparator_thenIgnoreEmptyTail()
+	{
+		OpSpec[] ops = process("main", "list ##");
+
+		assertEquals(1, ops.length);
+		assertOp(ops[0], "list", null, mainList);
+		assertEquals(1, process("main", "list ######").length);
+	}
+
+	@Test
+	public void onProcessInput_withBlankTailOrLeadingSeparator_thenReturnEmptySpecification()
+	{
+		assertEquals(0, process("main", "list ## ").length);
+		assertEquals(0, process("main", "## list").length);
+		assertEquals(0, process("main", "list #### help").length);
+		assertEquals(0, process("main", "   ").length);
+	}
+
+	@Test
+	public void onProcessInput_withOddSeparatorRun_thenSplitLeftToRight()
+	{
+		// "list ### help" splits into "list " and "# help", and "#" is unknown.
+		//
+		assertEquals(0, process("main", "list ### help").length);
+	}
+
+	@Test
+	public void onProcessInput_withUniqueAbbreviation_thenResolveCommand()
+	{
+		OpSpec[] ops = process("data", "EXP now ## main.li ## he");
+
+		assertEquals(3, ops.length);
+		assertOp(ops[0], "EXP", "now", export);
+		assertOp(ops[1], "li",  null,  mainList);
+		assertOp(ops[2], "he",  null,  help);
+	}
+
+	@Test
+	public void onProcessInput_withAmbiguousAbbreviation_thenReturnEmptySpecification()
+	{
+		registry.register(new DummyAction("exit", "exit", true), "data");
+
+		assertEquals(0, process("data", "ex").length);
+		assertEquals(1, process("data", "exi").length);
+	}
+
+	@Test
+	public void onProcessInput_withPipe_thenReturnPipelineOfStages()
+	{
+		// Arrange
+		//
+		StreamAction lines = stream("lines");
+		StreamAction count = stream("count");
+
+		registry.register(lines, "data");
+		registry.register(count, ActionManager.GLOBAL_CONTEXT);
+
+		// Act
+		//
+		OpSpec[] ops = process("main", "help ## data.lines all | count ## list");
+
+		// Assert
+		//
+		assertEquals(3, ops.length);
+		assertOp(ops[0], "help", null, help);
+		assertEquals("data.lines all | count", ops[1].text());
+		assertEquals("Pipeline(lines all | count)", ops[1].action().toString());
+		assertOp(ops[2], "list", null, dataList);
+	}
+
+	@Test
+	public void onProcessInput_withPipeInParameter_thenReturnSingleAction()
+	{
+		// Arrange
+		//
+		registry.register(stream("find"), "data");
+
+		// Act
+		//
+		OpSpec[] ops = process("data", "find a|b ## find |c");
+
+		// Assert
+		//
+		assertEquals(2, ops.length);
+		assertEquals("find", ops[0].text());
+		assertEquals("a|b", ops[0].parameter());
+		assertEquals("|c", ops[1].parameter());
+	}
+
+	@Test
+	public void onProcessInput_withPipeToPlainAction_thenReturnEmptySpecification()
+	{
+		registry.register(stream("lines"), "data");
+
+		assertEquals(0, process("data", "lines | list").length);
+		assertEquals(0, process("data", "list | lines").length);
+		assertEquals(0, process("data", "lines | ").length);
+	}
+
+	///////////////////////////////
+	// Helpers                   //
+	///////////////////////////////
+
+	private OpSpec[] process(String context, String input)
+	{
+		return InputProcessor.processInput(context, input, registry);
+	}
+
+	private static StreamAction stream(String name)
+	{
+		return new StreamAction()
+		{
+			@Override public String  name()        { return name; }
+			@Override public String  description() { return name; }
+			@Override public void    enable()      { }
+			@Override public void    disable()     { }
+			@Override public boolean is_enabled()  { return true; }
+
+			@Override
+			public void process(Object param, Input in, Output out)
+			{
+			}
+		};
+	}
+
+	private static void assertOp(OpSpec op, String text, String parameter, Action action)
+	{
+		assertEquals(text, op.text());
+
+		if (parameter == null)
+		{
+			assertNull(op.parameter());
+		}
+		else
+		{
+			assertEquals(parameter, op.parameter());
+		}
+
+		assertSame(action, op.action());
+	}
 }
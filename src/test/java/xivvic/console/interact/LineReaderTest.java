@@ -0,0 +1,113 @@
+package xivvic.console.interact;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class LineReaderTest
+{
+	@Test
+	public void onReadLine_withMixedTerminators_thenMatchBufferedReader() throws IOException
+	{
+		LineReader subject = reader("one\ntwo\r\nthree\rfour", 16);
+
+		assertEquals("one",   subject.readLineString());
+		assertEquals("two",   subject.readLineString());
+		assertEquals("three", subject.readLineString());
+		assertEquals("four",  subject.readLineString());
+		assertNull(subject.readLineString());
+	}
+
+	@Test
+	public void onReadLine_withEmptyLinesAndTrailingTerminator_thenNoExtraLine() throws IOException
+	{
+		LineReader subject = reader("\n\r\nlast\r\n", 16);
+
+		assertEquals("",     subject.readLineString());
+		assertEquals("",     subject.readLineString());
+		assertEquals("last", subject.readLineString());
+		assertNull(subject.readLineString());
+		assertNull(subject.readLineString());
+	}
+
+	@Test
+	public void onReadLine_withEmptyInput_thenReturnNull() throws IOException
+	{
+		assertNull(reader("", 16).readLine());
+	}
+
+	@Test
+	public void onReadLine_withLinesLongerThanBuffer_thenReturnWholeLines() throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++)
+		{
+			sb.append("line-").append(i);
+		}
+		String longLine = sb.toString();
+
+		LineReader subject = reader(longLine + "\r\n" + longLine, 16);
+
+		assertEquals(longLine, subject.readLineString());
+		assertEquals(longLine, subject.readLineString());
+		assertNull(subject.readLineString());
+	}
+
+	@Test
+	public void onReadLine_withMultiByteCharactersAcrossBuffers_thenDecodeThem() throws IOException
+	{
+		String text = "caf\u00e9 \u20ac\u20ac\u20ac \ud83d\ude00 na\u00efve";
+
+		for (int size = 16; size < 24; size++)
+		{
+			LineReader subject = reader(text + "\n" + text, size);
+
+			assertEquals(text, subject.readLineString());
+			assertEquals(text, subject.readLineString());
+			assertNull(subject.readLineString());
+		}
+	}
+
+	@Test
+	public void onReadLine_withCarriageReturnAtBufferEnd_thenSkipFollowingNewline() throws IOException
+	{
+		// 15 characters and a '\r' fill the first 16 byte read; the '\n' starts the next.
+		//
+		LineReader subject = reader("fifteen-chars-x\r\nnext", 16);
+
+		assertEquals("fifteen-chars-x", subject.readLineString());
+		assertEquals("next",            subject.readLineString());
+		assertNull(subject.readLineString());
+	}
+
+	@Test
+	public void onReadLine_fromStreamWhileInterrupted_thenKeepReading() throws IOException
+	{
+		LineReader subject = new LineReader(new ByteArrayInputStream("one\ntwo\n".getBytes(StandardCharsets.UTF_8)));
+
+		try
+		{
+			Thread.currentThread().interrupt();
+
+			assertEquals("one", subject.readLineString());
+			assertEquals("two", subject.readLineString());
+			assertNull(subject.readLineString());
+		}
+		finally
+		{
+			Thread.interrupted();
+		}
+	}
+
+	private static LineReader reader(String s, int bufferSize)
+	{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		return new LineReader(Channels.newChannel(new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8, bufferSize);
+	}
+}
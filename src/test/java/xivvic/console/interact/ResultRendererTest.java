@@ -0,0 +1,45 @@
+package xivvic.console.interact;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import xivvic.console.action.ActionResult;
+
+public class ResultRendererTest
+{
+	@Test
+	public void onAccept_withEachKind_thenRenderForConsole()
+	throws Exception
+	{
+		// Arrange
+		//
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream             out = new PrintStream(bytes, true, "UTF-8");
+		ResultRenderer      subject = new ResultRenderer(out);
+
+		// Act
+		//
+		subject.accept(ActionResult.none());
+		subject.accept(ActionResult.of(42));
+		subject.accept(ActionResult.table(new String[] { "id", "name" }, Arrays.<String[]>asList(new String[] { "1", "ann" }).iterator()));
+		subject.accept(ActionResult.stream(Stream.of("a", "b")));
+
+		// Assert
+		//
+		assertEquals(
+				"42\n" +
+				"id  name\n" +
+				"--  ----\n" +
+				"1   ann\n" +
+				"a\n" +
+				"b\n",
+				new String(bytes.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+	}
+}
@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
@@ -146,6 +147,31 @@ public class StdinTest
 		assertEquals(s, result);
 	}
 
+	@Test
+	public void onGetString_withFailingStream_thenReturnNullAsEndOfInput() throws Exception
+	{
+		// Arrange
+		//
+		InputStream is = new InputStream()
+		{
+			@Override
+			public int read() throws IOException
+			{
+				throw new IOException("Stream closed");
+			}
+		};
+		subject = new Stdin(is, printstream);
+
+		// Act
+		//
+		String result = subject.getString();
+
+		// Assert
+		//
+		assertNull(result);
+		assertNull(subject.getLine());
+	}
+
 	@Test
 	public void onGetInteger_withIntegerString_thenReturnThatInteger() throws Exception
 	{
@@ -0,0 +1,88 @@
+package xivvic.console.interact;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class TableRendererTest
+{
+	private static final String[] HEADER = { "id", "name" };
+
+	@Test
+	public void onRender_withSampledWidths_thenAlignAndCutLaterCells()
+	throws IOException
+	{
+		// Arrange
+		//
+		TableRenderer subject = new TableRenderer().sampleSize(2);
+		Iterator<String[]> rows = Arrays.asList(
+				new String[] { "1", "ann" },
+				new String[] { "22", null },
+				new String[] { "333", "bartholomew" }).iterator();
+		StringBuilder out = new StringBuilder();
+
+		// Act
+		//
+		long count = subject.render(HEADER, rows, out);
+
+		// Assert
+		//
+		assertEquals(3, count);
+		assertEquals(
+				"id  name\n" +
+				"--  ----\n" +
+				"1   ann\n"  +
+				"22  \n"     +
+				"3~  bar~\n", out.toString());
+	}
+
+	@Test
+	public void onRender_withPagerDeclining_thenStopAfterFirstPage()
+	throws IOException
+	{
+		// Arrange
+		//
+		List<Long>     asked = new ArrayList<>();
+		TableRenderer subject = new TableRenderer().paging(10, rows -> asked.add(rows) && false);
+		Iterator<String[]> rows = IntStream.range(0, 1000).mapToObj(i -> new String[] { Integer.toString(i) }).iterator();
+		StringBuilder out = new StringBuilder();
+
+		// Act
+		//
+		long count = subject.render(null, rows, out);
+
+		// Assert
+		//
+		assertEquals(10, count);
+		assertEquals(Arrays.asList(10L), asked);
+	}
+
+	@Test
+	public void onExport_withSpecialCharacters_thenEscapePerFormat()
+	throws IOException
+	{
+		// Arrange
+		//
+		List<String[]> rows = Arrays.asList(new String[][] { { "a,b", "say \"hi\"", "tab\there" }, { null, "line\nbreak", "back\\slash" } });
+		StringWriter  csv = new StringWriter();
+		StringWriter  tsv = new StringWriter();
+
+		// Act
+		//
+		TableRenderer.export(null, rows.iterator(), TableRenderer.Format.CSV, csv);
+		TableRenderer.export(null, rows.iterator(), TableRenderer.Format.TSV, tsv);
+
+		// Assert
+		//
+		assertEquals("\"a,b\",\"say \"\"hi\"\"\",tab\there\r\n,\"line\nbreak\",back\\slash\r\n", csv.toString());
+		assertEquals("a,b\tsay \"hi\"\ttab\\there\n\tline\\nbreak\tback\\\\slash\n", tsv.toString());
+	}
+}
@@ -0,0 +1,528 @@
+package xivvic.console.menu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import xivvic.console.action.Action;
+import xivvic.console.action.ActionBase;
+import xivvic.console.action.ActionManager;
+import xivvic.console.action.ActionMetrics;
+import xivvic.console.action.ActionResult;
+import xivvic.console.action.CancellableAction;
+import xivvic.console.action.CancellationToken;
+import xivvic.console.action.DummyAction;
+import xivvic.console.action.LazyAction;
+import xivvic.console.action.ResultAction;
+import xivvic.console.interact.InformUser;
+import xivvic.console.interact.MessageChannel;
+import xivvic.console.interact.ParsedInput;
+import xivvic.console.interact.Stdin;
+
+public class MenuManagerTest
+{
+	private MenuManager  subject;
+	private Menu         main;
+	private Menu         sub;
+	private List<String> messages;
+	private List<Object> invoked;
+
+	@Before
+	public void before()
+	{
+		ActionManager am = new ActionManager();
+
+		subject  = new MenuManager(am);
+		main     = new Menu("Main", "main", subject);
+		sub      = new Menu("Sub", "sub", subject);
+		messages = Collections.synchronizedList(new ArrayList<>());
+		invoked  = new ArrayList<>();
+
+		sub.addItem("Record", "rec", new ActionBase("record", "Record the parameter", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				invoked.add(param);
+			}
+		});
+
+		main.addItem(sub);
+		subject.addCoreActions();
+		subject.addStartMenu(main);
+		subject.setInformUser(new InformUser()
+		{
+			@Override
+			public void displayTable(String id, String[] content) {}
+
+			@Override
+			public void userMessage(MessageChannel channel, String topic, String msg)
+			{
+				messages.add(channel + " " + topic + " " + msg);
+			}
+		});
+	}
+
+	@Test
+	public void onParse_withKnownCommand_thenValid()
+	{
+		assertTrue(subject.parse("sub").isValid());
+		assertFalse(subject.parse("rec").isValid());
+		assertTrue(subject.parse("sub.rec x").isValid());
+	}
+
+	@Test
+	public void onInvoke_withParsedInput_thenSameAsInvokingTheString()
+	{
+		// Arrange
+		//
+		String       input = "sub.rec a ## sub.rec b";
+		ParsedInput parsed = subject.parse(input);
+
+		// Act
+		//
+		subject.invoke(input);
+		List<Object> fromString = new ArrayList<>(invoked);
+		invoked.clear();
+
+		subject.invoke(parsed);
+
+		// Assert
+		//
+		assertEquals(input, parsed.input());
+		assertEquals(2, parsed.ops().length);
+		assertEquals("b", parsed.ops()[1].parameter());
+		assertEquals(Arrays.<Object>asList("a", "b"), fromString);
+		assertEquals(fromString, invoked);
+		assertEquals("main", subject.activeMenuPrefix());
+	}
+
+	@Test
+	public void onInvoke_withUnrecognizedParsedInput_thenNothingRuns()
+	{
+		// Arrange
+		//
+		ParsedInput parsed = subject.parse("rec a");
+
+		// Act
+		//
+		subject.invoke(parsed);
+		subject.invoke("rec a");
+
+		// Assert
+		//
+		assertFalse(parsed.isValid());
+		assertEquals("rec a", parsed.input());
+		assertEquals(0, parsed.ops().length);
+		assertTrue(invoked.isEmpty());
+		assertEquals("main", subject.activeMenuPrefix());
+	}
+
+	@Test
+	public void onInvoke_withSubmenuThenUp_thenNavigate()
+	{
+		subject.invoke("sub");
+		assertEquals("sub", subject.activeMenuPrefix());
+
+		subject.invoke("rec hello");
+		assertEquals(1, invoked.size());
+		assertEquals("hello", invoked.get(0));
+
+		subject.invoke("up");
+		assertEquals("main", subject.activeMenuPrefix());
+
+		subject.invoke("exit");
+		assertTrue(subject.isDone());
+	}
+
+	@Test
+	public void onDisplay_thenPrintActiveMenu()
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		PrintStream              out = new PrintStream(buffer, true);
+
+		subject.invoke("sub");
+		subject.display(out);
+		subject.display(out);
+
+		String menu = MenuFormatter.format(sub, new LinkedList<>(Arrays.asList(main, sub))) + System.lineSeparator();
+		assertEquals(menu + menu, new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void onFork_withNavigation_thenOriginalStackUnchanged()
+	{
+		MenuManager fork = subject.fork();
+
+		fork.invoke("sub");
+		assertEquals("sub",  fork.activeMenuPrefix());
+		assertEquals("main", subject.activeMenuPrefix());
+
+		fork.invoke("exit");
+		assertTrue(fork.isDone());
+		assertFalse(subject.isDone());
+	}
+
+	@Test
+	public void onInvoke_withSeparateCursors_thenEachNavigatesAlone()
+	{
+		// Arrange
+		//
+		MenuCursor first  = subject.newCursor();
+		MenuCursor second = subject.newCursor();
+
+		// Act
+		//
+		subject.invoke(first, "sub");
+		subject.invoke(first, "rec one");
+		subject.invoke(second, "exit");
+
+		// Assert
+		//
+		assertEquals("sub", first.activeMenuPrefix());
+		assertEquals(2, first.depth());
+		assertTrue(second.isDone());
+		assertEquals("main", subject.activeMenuPrefix());
+		assertEquals(1, invoked.size());
+		assertFalse(subject.parse(second, "sub").isValid());
+	}
+
+	@Test
+	public void onRecordEnd_thenMacroReplaysStepsWithParameters()
+	{
+		// Arrange
+		//
+		subject.addMacroActions();
+		MenuCursor other = subject.newCursor();
+
+		// Act
+		//
+		subject.invoke("record visit sample");
+		subject.invoke("sub");
+		subject.invoke("rec $1 there");
+		subject.invoke("up");
+		subject.invoke("record end");
+		subject.invoke(other, "visit hi");
+
+		// Assert
+		//
+		assertEquals(2, invoked.size());
+		assertEquals("sample there", invoked.get(0));
+		assertEquals("hi there", invoked.get(1));
+		assertEquals("main", other.activeMenuPrefix());
+		assertEquals(null, subject.cursor().recording());
+		assertEquals(3, ((Macro) subject.parse("visit").ops()[0].action()).size());
+	}
+
+	@Test
+	public void onInvoke_withResultAction_thenOnlyCursorWithHandlerReadsResult()
+	{
+		// Arrange
+		//
+		List<ActionResult> results = new ArrayList<>();
+		AtomicInteger         rows = new AtomicInteger();
+		AtomicInteger       closed = new AtomicInteger();
+		MenuCursor     interactive = subject.newCursor().results(r ->
+		{
+			results.add(r);
+			r.records().forEachRemaining(row -> {});
+		});
+
+		subject.addHiddenAction("lines", new ResultAction()
+		{
+			@Override public String  name()        { return "lines"; }
+			@Override public String  description() { return "Numbered lines"; }
+			@Override public void    enable()      { }
+			@Override public void    disable()     { }
+			@Override public boolean is_enabled()  { return true; }
+
+			@Override
+			public ActionResult result(Object param)
+			{
+				Stream<String> lines = IntStream.range(0, Integer.parseInt(param.toString()))
+						.peek(i -> rows.incrementAndGet())
+						.mapToObj(Integer::toString)
+						.onClose(closed::incrementAndGet);
+
+				return ActionResult.stream(lines);
+			}
+		});
+
+		// Act
+		//
+		subject.invoke("lines 1000000");
+		subject.invoke(interactive, "lines 3");
+
+		// Assert
+		//
+		assertEquals(1, results.size());
+		assertEquals(ActionResult.Kind.STREAM, results.get(0).kind());
+		assertEquals(3, rows.get());
+		assertEquals(2, closed.get());
+	}
+
+	@Test
+	public void onInvoke_withTimeout_thenActionIsInterruptedAndReported()
+	{
+		// Arrange
+		//
+		subject.setTimeout("nap", 50);
+		subject.addHiddenAction("nap", new ActionBase("nap", "Sleep for a minute", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				try
+				{
+					Thread.sleep(60000);
+				}
+				catch (InterruptedException e)
+				{
+					CancellationToken.current().throwIfCancelled();
+				}
+			}
+		});
+
+		// Act
+		//
+		long start = System.nanoTime();
+		subject.invoke("nap");
+		long    ms = (System.nanoTime() - start) / 1000000;
+
+		// Assert
+		//
+		assertTrue(ms < 10000);
+		assertEquals(Arrays.asList("STATUS nap Cancelled: deadline of [50] ms exceeded"), messages);
+		assertFalse(Thread.currentThread().isInterrupted());
+	}
+
+	@Test
+	public void onCancel_withActionIgnoringIt_thenWatchdogReports()
+	throws Exception
+	{
+		// Arrange
+		//
+		List<CancellationToken> tokens = new ArrayList<>();
+		MenuCursor              cursor = subject.newCursor();
+
+		subject.setCancellationGrace(50);
+		subject.addHiddenAction("spin", new CancellableAction()
+		{
+			@Override public String  name()        { return "spin"; }
+			@Override public String  description() { return "Ignore cancellation"; }
+			@Override public void    enable()      { }
+			@Override public void    disable()     { }
+			@Override public boolean is_enabled()  { return true; }
+
+			@Override
+			public void invoke(Object param, CancellationToken token)
+			{
+				tokens.add(token);
+
+				long end = System.nanoTime() + 600 * 1000000L;
+				while (System.nanoTime() < end)
+				{
+					// Busy, and never checks.
+				}
+			}
+		});
+
+		Thread canceller = new Thread(() ->
+		{
+			while (! cursor.cancel("test"))
+			{
+				Thread.yield();
+			}
+		});
+		canceller.start();
+
+		// Act
+		//
+		subject.invoke(cursor, "spin");
+		canceller.join();
+
+		// Assert
+		//
+		assertEquals("test", tokens.get(0).reason());
+		assertEquals(2, messages.size());
+		assertTrue(messages.get(0), messages.get(0).startsWith("ERROR spin Still running ["));
+		assertEquals("STATUS spin Cancelled: test", messages.get(1));
+		assertFalse(cursor.cancel("again"));
+	}
+
+	@Test
+	public void onCancel_withActionReadingStdin_thenConsoleStillReads()
+	throws Exception
+	{
+		// Arrange
+		//
+		PipedOutputStream typing = new PipedOutputStream();
+		Stdin              stdin = new Stdin(new PipedInputStream(typing), new PrintStream(new ByteArrayOutputStream()));
+		MenuCursor        cursor = subject.newCursor();
+
+		subject.addHiddenAction("ask", new ActionBase("ask", "Read an answer", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				invoked.add(stdin.getString());
+			}
+		});
+
+		Thread user = new Thread(() ->
+		{
+			try
+			{
+				while (! cursor.cancel("test"))
+				{
+					Thread.yield();
+				}
+
+				// A reader interrupted now would fail, and stdin would be lost.
+				//
+				Thread.sleep(100);
+				typing.write("answer\nnext\n".getBytes(StandardCharsets.UTF_8));
+				typing.flush();
+			}
+			catch (InterruptedException | IOException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		});
+		user.start();
+
+		// Act
+		//
+		subject.invoke(cursor, "ask");
+		user.join();
+
+		// Assert
+		//
+		assertEquals(Arrays.<Object>asList("answer"), invoked);
+		assertEquals(Arrays.asList("STATUS ask Cancelled: test"), messages);
+		assertFalse(Thread.currentThread().isInterrupted());
+		assertEquals("next", stdin.getString());
+	}
+
+	@Test
+	public void onInvoke_withLazyPlainAction_thenRecordedOnce()
+	{
+		// Arrange
+		//
+		boolean wasEnabled = ActionMetrics.isEnabled();
+		Action       plain = new Action()
+		{
+			@Override public String  name()        { return "plain"; }
+			@Override public String  description() { return "Not an ActionBase"; }
+			@Override public void    invoke(Object param) { invoked.add(param); }
+			@Override public void    enable()      {}
+			@Override public void    disable()     {}
+			@Override public boolean is_enabled()  { return true; }
+		};
+
+		subject.addHiddenAction("lazy-metrics", new LazyAction("lazy-metrics", "Built on first use", () -> plain));
+		ActionMetrics.setEnabled(true);
+
+		// Act
+		//
+		try
+		{
+			subject.invoke("lazy-metrics 1");
+		}
+		finally
+		{
+			ActionMetrics.setEnabled(wasEnabled);
+		}
+
+		// Assert
+		//
+		assertEquals(1, invoked.size());
+		assertEquals(1, ActionMetrics.snapshot("lazy-metrics").count());
+	}
+
+	@Test
+	public void onChange_withRegisteredMenu_thenThrowAndMenuUnchanged()
+	{
+		Menu unregistered = new Menu("Other", "other", subject);
+
+		for (Runnable change : Arrays.<Runnable>asList(
+				() -> main.addItem("List", "ls", new DummyAction("list", "l", true)),
+				() -> main.addItem(unregistered),
+				() -> main.title("Renamed"),
+				() -> main.items().clear()))
+		{
+			try
+			{
+				change.run();
+				fail("Expected a registered menu to refuse changes");
+			}
+			catch (IllegalStateException | UnsupportedOperationException expected)
+			{
+				// Refused.
+				//
+			}
+		}
+
+		assertEquals(1, main.count());
+		assertEquals("Main", main.title());
+	}
+
+	@Test
+	public void onInvoke_withNavigationActionAndNoCursor_thenMoveManagersCursor()
+	{
+		MenuCursor other = subject.newCursor();
+
+		subject.parse("sub").ops()[0].action().invoke(null);
+		assertEquals("sub", subject.activeMenuPrefix());
+		assertEquals("main", other.activeMenuPrefix());
+
+		subject.parse("up").ops()[0].action().invoke(null);
+		assertEquals("main", subject.activeMenuPrefix());
+	}
+
+	@Test
+	public void onInvoke_withAsyncAction_thenRunOnExecutorAndReportStatus()
+	{
+		List<Runnable> queued = new ArrayList<>();
+		Executor     executor = queued::add;
+
+		subject.setAsyncExecutor(executor);
+		subject.addHiddenAction("slow", new ActionBase("slow", "Slow action", true)
+		{
+			@Override
+			protected void internal_invoke(Object param)
+			{
+				invoked.add(param);
+			}
+		}.async(true));
+
+		subject.invoke("slow 42");
+		assertTrue(invoked.isEmpty());
+		assertEquals(1, queued.size());
+
+		queued.get(0).run();
+		assertEquals(1, invoked.size());
+		assertEquals("STATUS slow Started", messages.get(0));
+		assertTrue(messages.get(1).startsWith("STATUS slow Completed in "));
+	}
+}
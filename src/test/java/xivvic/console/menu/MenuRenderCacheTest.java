@@ -0,0 +1,83 @@
+package xivvic.console.menu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Deque;
+import java.util.LinkedList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import xivvic.console.action.ActionManager;
+import xivvic.console.action.DummyAction;
+
+public class MenuRenderCacheTest
+{
+	private MenuRenderCache subject;
+	private Menu            main;
+	private Menu            sub;
+	private DummyAction     action;
+	private Deque<Menu>     stack;
+
+	@Before
+	public void before()
+	{
+		MenuManager mm = new MenuManager(new ActionManager());
+
+		subject = new MenuRenderCache();
+		main    = new Menu("Main", "main", mm);
+		sub     = new Menu("Sub", "sub", mm);
+		action  = new DummyAction("list", "List things", true);
+		stack   = new LinkedList<>();
+
+		main.addItem("List", "ls", action);
+		stack.add(main);
+	}
+
+	@Test
+	public void onRender_withNothingChanged_thenReuseRendering()
+	{
+		char[] first = subject.render(stack);
+
+		assertSame(first, subject.render(stack));
+		assertEquals(MenuFormatter.format(main, stack), new String(first));
+	}
+
+	@Test
+	public void onRender_afterDisable_thenRenderAgain()
+	{
+		char[] first = subject.render(stack);
+
+		action.disable();
+		char[] second = subject.render(stack);
+
+		assertNotSame(first, second);
+		assertTrue(new String(second).contains(" disabled "));
+	}
+
+	@Test
+	public void onRender_afterItemAdded_thenRenderAgain()
+	{
+		char[] first = subject.render(stack);
+
+		main.addItem("Find", "f", new DummyAction("find", "Find things", true));
+
+		assertNotSame(first, subject.render(stack));
+	}
+
+	@Test
+	public void onRender_afterStackChange_thenRenderActiveMenu()
+	{
+		subject.render(stack);
+
+		stack.add(sub);
+		String pushed = new String(subject.render(stack));
+		assertTrue(pushed.contains("Main >> Sub"));
+
+		stack.removeLast();
+		assertEquals(MenuFormatter.format(main, stack), new String(subject.render(stack)));
+	}
+}